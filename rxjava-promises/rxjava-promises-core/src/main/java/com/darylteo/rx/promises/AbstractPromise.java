@@ -2,82 +2,163 @@ package com.darylteo.rx.promises;
 
 import rx.Observable;
 import rx.Observer;
+import rx.Scheduler;
+import rx.Subscriber;
 import rx.exceptions.OnErrorThrowable;
-import rx.functions.*;
-import rx.subjects.ReplaySubject;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.functions.Function;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public abstract class AbstractPromise<T> implements Observer<T> {
   public static enum STATE {
     PENDING,
     FULFILLED,
-    REJECTED
+    REJECTED,
+    CANCELLED
   }
 
-  /* Properties */
-  private AbstractPromise<T> that = this;
+  /* Sentinels */
+  // stands in for a fulfilled value of null, as null means pending
+  private static final Object NULL = new Object();
 
-  private ReplaySubject<T> subject;
-  private Observable<T> obs;
+  // the state of every cancelled promise
+  private static final Rejection CANCELLATION = new Rejection(new CancellationException("Promise was cancelled"));
 
-  private STATE state = STATE.PENDING;
-  private T value = null;
-  private Throwable reason;
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<AbstractPromise, Object> STATE_UPDATER =
+    AtomicReferenceFieldUpdater.newUpdater(AbstractPromise.class, Object.class, "state");
+
+  /* Properties */
+  // The single field holding the entire state of this promise:
+  //  - null or a Continuation: pending. The Continuation is the most recently
+  //    registered callback, with the rest linked through Continuation.next
+  //  - CANCELLATION: cancelled
+  //  - any other Rejection: rejected
+  //  - NULL or any other object: fulfilled with that value
+  // It only ever moves out of pending once, through a compare-and-set. The
+  // value or reason is written before that, so readers that see a settled
+  // state also see what it settled with.
+  private volatile Object state;
+
+  // last value received through onNext, when used as an Observer
+  private T next;
+
+  // where handlers registered through _then are run. null runs them
+  // synchronously, on the thread that settles this promise
+  private Executor executor;
+
+  // what this promise is waiting on to be settled, if anything. Cleared once
+  // it is settled, so that a settled promise holds nothing further up its chain
+  private volatile Upstream upstream;
+
+  // only used when debugging or monitoring: where the handler that settles
+  // this promise was registered (see RegistrationSite), the context returned
+  // by PromiseMetrics.created, or a Probe holding both
+  private Object probe;
 
   public STATE getState() {
-    return this.state;
+    return stateOf(this.state);
   }
 
   public boolean isPending() {
-    return this.state == STATE.PENDING;
+    return this.getState() == STATE.PENDING;
   }
 
   public boolean isFulfilled() {
-    return this.state == STATE.FULFILLED;
+    return this.getState() == STATE.FULFILLED;
   }
 
   public boolean isRejected() {
-    return this.state == STATE.REJECTED;
+    return this.getState() == STATE.REJECTED;
   }
 
+  public boolean isCancelled() {
+    return this.state == CANCELLATION;
+  }
+
+  @SuppressWarnings("unchecked")
   public T getValue() {
-    return this.value;
+    Object state = this.state;
+
+    if (stateOf(state) != STATE.FULFILLED || state == NULL) {
+      return null;
+    }
+
+    return (T) state;
   }
 
   public Throwable getReason() {
-    return this.reason;
+    Object state = this.state;
+
+    if (state instanceof Rejection) {
+      return ((Rejection) state).reason;
+    }
+
+    return null;
   }
 
   /* Constructor */
   public AbstractPromise() {
-    this(null);
+    if (Metrics.ENABLED) {
+      this.probe = Metrics.INSTANCE.created(this);
+    }
+  }
+
+  /**
+   * Creates a promise whose then/fail/fin handlers are run by the given
+   * executor, as with {@link #_on}. Subclasses can pass theirs on to the
+   * promises they create in {@link #newDeferred}, so a whole chain is run by
+   * the same executor.
+   */
+  protected AbstractPromise(Executor executor) {
+    this();
+    this.executor = executor;
   }
 
   public AbstractPromise(Observable<T> source) {
-    this.subject = ReplaySubject.create();
-    this.obs = this.subject.last();
+    this();
 
     if (source != null) {
-      source.subscribe(this.subject);
+      SourceSubscriber<T> subscriber = new SourceSubscriber<T>(this);
+      this.waitOn(subscriber);
+      source.subscribe(subscriber);
     }
+  }
 
-    // promise states
-    this.obs.subscribe(new Observer<T>() {
-      @Override
-      public void onCompleted() {
-        that.state = STATE.FULFILLED;
-      }
+  /* ================== */
+  /* Settled Promises */
+
+  /**
+   * Fulfills a promise that has only just been created. Nothing can be
+   * waiting on it yet, so it is put straight into the fulfilled state.
+   * Handlers chained from it later are run as soon as they are registered.
+   */
+  protected static <T> AbstractPromise<T> _resolved(AbstractPromise<T> promise, T value) {
+    promise.state = value == null ? NULL : value;
+
+    if (Metrics.ENABLED) {
+      promise.measure(promise.state);
+    }
 
-      @Override
-      public void onError(Throwable reason) {
-        that.state = STATE.REJECTED;
-        that.reason = reason;
-      }
+    return promise;
+  }
 
-      @Override
-      public void onNext(T value) {
-        that.value = value;
-      }
-    });
+  /**
+   * Rejects a promise that has only just been created, as {@link #_resolved}.
+   */
+  protected static <T> AbstractPromise<T> _rejected(AbstractPromise<T> promise, Object reason) {
+    return promise.rejectNew(rejection(reason));
+  }
+
+  protected static <T> AbstractPromise<T> _rejected(AbstractPromise<T> promise, Throwable reason) {
+    return promise.rejectNew(rejection(reason));
   }
 
   /* ================== */
@@ -87,187 +168,240 @@ public abstract class AbstractPromise<T> implements Observer<T> {
     final Function onRejected,
     final Function onFinally) {
     // This is the next promise in the chain.
-    // The handlers you see below will resolve their values and forward them
-    // to this promise.
-    final AbstractPromise<O> deferred = this._create();
+    // The continuation registered below will resolve the values of the
+    // handlers and forward them to this promise.
+    final AbstractPromise<O> deferred = this.newDeferred();
 
-    // Create the Observer
-    final Observer<T> observer = new Observer<T>() {
-      @Override
-      public void onCompleted() {
-        this.evaluate();
-      }
+    if (RegistrationSite.ENABLED) {
+      RegistrationSite site = RegistrationSite.capture(this, this.site());
 
-      @Override
-      public void onError(Throwable reason) {
-        this.evaluate();
+      if (site != null) {
+        deferred.probe = Metrics.ENABLED ? new Probe(site, deferred.probe) : site;
       }
+    }
 
-      @Override
-      public void onNext(T value) {
+    if (Metrics.ENABLED) {
+      Function handler = onFulfilled != null ? onFulfilled : onRejected != null ? onRejected : onFinally;
+      Metrics.INSTANCE.chained(this.metricsContext(), deferred.metricsContext(), handler);
+    }
 
-      }
+    // Handlers are classified here, so a mistyped handler fails immediately
+    ThenContinuation<T, O> continuation = new ThenContinuation<T, O>(this, deferred, onFulfilled, onRejected, onFinally, this.executor);
 
-      private void evaluate() {
-        try {
-          // onfinally and onFulfilled/onRejected are mutually exclusive
-          // note: this implementation of finally is closer to "onComplete" rather than "finallyDo"
-          // in that it fires immediately when the previous Promise is fulfilled, rather than
-          // for the entire sequence of Observables to complete its sequence.
-          if (onFinally != null) {
-            evaluateFinally();
-            return;
-          }
+    deferred.waitOn(continuation);
+    this.register(continuation);
 
-          // No finally block was provided, thus we need to evaluate fulfillment
-          // or rejection.
-          // If the appropriate handler is not provided, it is forwarded to the
-          // next promise
-          if (that.state == STATE.FULFILLED) {
-            evaluateFulfilled();
-            return;
-          }
+    return deferred;
+  }
 
-          if (that.state == STATE.REJECTED) {
-            evaluateRejected();
-            return;
-          }
-        } catch (Throwable e) {
-          // On any exception in the handlers above, we should throw the
-          // exception to the next promise
+  /**
+   * Creates a promise that settles with the same value or reason as this one,
+   * but whose then/fail/fin handlers are run by the given executor instead
+   * of the thread that settles it. Promises further down the chain are not
+   * affected.
+   */
+  protected AbstractPromise<T> _on(Executor executor) {
+    if (executor == null) {
+      throw new NullPointerException("executor");
+    }
 
-          deferred.reject(e);
-        }
-      }
+    AbstractPromise<T> deferred = this.newDeferred();
+    deferred.executor = executor;
+    deferred.become(this);
 
-      private void evaluateFinally() {
-        AbstractPromise<?> result = callFinally();
-
-        if (result != null) {
-          // the finally block returned a promise, so we need to delay
-          // fulfillment of the next promise until the returned promise is
-          // fulfilled
-          ((AbstractPromise<? super Object>) result)._then(
-            new Action1<Object>() {
-              @Override
-              public void call(Object v) {
-                deferred.fulfill((O) that.value);
-              }
-            }, new Action1<Throwable>() {
-              @Override
-              public void call(Throwable e) {
-                deferred.reject(e);
-              }
-            }, null
-          );
-        } else {
-          // nothing was returned by the finally block. We can go ahead and
-          // forward the value/reason held by this promise on to the next
-          // one for resolution
-          if (that.state == STATE.FULFILLED) {
-            deferred.fulfill((O) that.value);
-          } else {
-            deferred.reject(that.reason);
-          }
-        }
+    return deferred;
+  }
 
-      }
+  protected AbstractPromise<T> _on(Scheduler scheduler) {
+    if (scheduler == null) {
+      throw new NullPointerException("scheduler");
+    }
 
-      private void evaluateFulfilled() {
-        if (onFulfilled != null) {
-          Object result = callFunction(onFulfilled, that.value);
-          evalResult(result);
-        } else {
-          // Sends the value forward. We assume that the casting will pass
-          deferred.fulfill((O) that.value);
-        }
-      }
+    return this._on(new SchedulerExecutor(scheduler));
+  }
 
-      private void evaluateRejected() {
-        if (onRejected != null) {
-          // Allow this handler to recover from the rejection
-          Object result = callFunction(onRejected, that.reason);
-          evalResult(result);
-        } else {
-          // Forward it to the next promise
-          deferred.reject(that.reason);
-        }
-      }
+  /**
+   * @return the executor that runs handlers registered on this promise, or
+   * null if they are run by the thread that settles it
+   */
+  protected Executor getExecutor() {
+    return this.executor;
+  }
 
-      private AbstractPromise<?> callFinally() {
-        if (onFinally instanceof Func0) {
-          return (AbstractPromise<?>) ((Func0<?>) onFinally).call();
-        }
+  /* ================== */
+  /* Timers */
+
+  /**
+   * Creates a promise that settles the same way as this one, unless this one
+   * is still pending after the given delay, in which case it is rejected
+   * with a {@link java.util.concurrent.TimeoutException}. The timer task is
+   * cancelled as soon as this promise settles.
+   */
+  protected AbstractPromise<T> _timeout(long delay, TimeUnit unit, Timer timer) {
+    AbstractPromise<T> deferred = this.newDeferred();
+    new TimeoutContinuation<T>(this, deferred, delay, unit).start(timer);
 
-        ((Action0) onFinally).call();
-        return null;
-      }
+    return deferred;
+  }
 
-      private <O> Object callFunction(Function function, O value) throws IllegalArgumentException {
-        if (function instanceof Action0) {
-          ((Action0) function).call();
-          return null;
-        }
+  /**
+   * Fulfills deferred with the given value after the given delay.
+   */
+  protected static <T> AbstractPromise<T> _delay(AbstractPromise<T> deferred, T value, long delay, TimeUnit unit, Timer timer) {
+    new DelayTask<T>(deferred, value).start(timer, delay, unit);
+    return deferred;
+  }
 
-        if (function instanceof Action1<?>) {
-          ((Action1<O>) function).call(value);
-          return null;
-        }
+  /**
+   * Settles deferred the same way as the first promise returned by attempt
+   * that is fulfilled. Each time one is rejected, the policy decides whether
+   * to call attempt again, and after how long a delay on the given timer.
+   * Once it gives up, deferred is rejected with the last reason.
+   */
+  protected static <T> AbstractPromise<T> _retry(AbstractPromise<T> deferred, Func0<? extends AbstractPromise<? extends T>> attempt, RetryPolicy policy, Timer timer) {
+    if (policy == null) {
+      throw new NullPointerException("policy");
+    }
 
-        if (function instanceof Func0<?>) {
-          return ((Func0<?>) function).call();
-        }
+    Retry.retry(deferred, attempt, policy, timer);
+    return deferred;
+  }
 
-        if (function instanceof Func1<?, ?>) {
-          return ((Func1<O, ? super Object>) function).call(value);
-        }
+  /* ================== */
+  /* Combinators */
+
+  /**
+   * Fulfills deferred with a list of the values of all the given promises,
+   * in iteration order, once they are all fulfilled. If any of them is
+   * rejected, deferred is rejected with the same reason.
+   */
+  protected static <T> AbstractPromise<List<T>> _all(
+    AbstractPromise<List<T>> deferred,
+    Iterable<? extends AbstractPromise<? extends T>> promises) {
+    Join.all(deferred, promises);
+    return deferred;
+  }
 
-        throw new IllegalArgumentException("Could not correctly invoke callback function with type " + function.getClass().toString());
-      }
+  /**
+   * Fulfills deferred with a list of the given promises, in iteration order,
+   * once every one of them is either fulfilled or rejected.
+   */
+  protected static <P extends AbstractPromise<?>> AbstractPromise<List<P>> _allSettled(
+    AbstractPromise<List<P>> deferred,
+    Iterable<? extends P> promises) {
+    Join.allSettled(deferred, promises);
+    return deferred;
+  }
 
-      // takes a result and either converts it to a promise or sends it forward
-      // for fulfillment
-      @SuppressWarnings("unchecked")
-      private void evalResult(Object result) {
-        if (result instanceof AbstractPromise) {
-          deferred.become((AbstractPromise<O>) result);
-        } else {
-          deferred.fulfill((O) result);
-        }
-      }
-    };
+  /**
+   * Settles deferred the same way as whichever of the given promises is
+   * settled first. The others are then detached from.
+   */
+  protected static <T> AbstractPromise<T> _race(
+    AbstractPromise<T> deferred,
+    Iterable<? extends AbstractPromise<? extends T>> promises) {
+    Race.race(deferred, promises);
+    return deferred;
+  }
 
-    this.obs.subscribe(observer);
+  /**
+   * Fulfills deferred with the value of whichever of the given promises is
+   * fulfilled first, detaching from the others. If every one of them is
+   * rejected, deferred is rejected with an {@link AggregateException}.
+   */
+  protected static <T> AbstractPromise<T> _any(
+    AbstractPromise<T> deferred,
+    Iterable<? extends AbstractPromise<? extends T>> promises) {
+    Race.any(deferred, promises);
+    return deferred;
+  }
 
+  /**
+   * Fulfills deferred with a list of the values of the promises returned by
+   * the function for each item, in iteration order, with at most maxInFlight
+   * of those promises pending at once. Each item is only taken from the
+   * iterable once there is room for it. If any of the promises is rejected,
+   * deferred is rejected with the same reason and the rest are cancelled.
+   */
+  protected static <T, R> AbstractPromise<List<R>> _mapConcurrent(
+    AbstractPromise<List<R>> deferred,
+    Iterable<? extends T> items,
+    int maxInFlight,
+    Func1<? super T, ? extends AbstractPromise<? extends R>> function) {
+    checkMaxInFlight(maxInFlight);
+    BoundedMap.map(deferred, items, maxInFlight, function);
     return deferred;
   }
 
+  /**
+   * As {@link #_mapConcurrent}, but the values are emitted as each promise
+   * is fulfilled rather than collected. Every subscription maps the items
+   * afresh, and unsubscribing stops it.
+   */
+  protected static <T, R> Observable<R> _streamConcurrent(
+    final Iterable<? extends T> items,
+    final int maxInFlight,
+    final Func1<? super T, ? extends AbstractPromise<? extends R>> function) {
+    checkMaxInFlight(maxInFlight);
+
+    return Observable.create(new Observable.OnSubscribe<R>() {
+      @Override
+      public void call(Subscriber<? super R> subscriber) {
+        BoundedMap.stream(subscriber, items, maxInFlight, function);
+      }
+    });
+  }
+
+  private static void checkMaxInFlight(int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be at least 1, was " + maxInFlight);
+    }
+  }
+
   /* Result Methods */
   public void fulfill(T value) {
-    this.subject.onNext(value);
-    this.subject.onCompleted();
+    this.settle(value == null ? NULL : value);
   }
 
   public void reject(Object reason) {
-    this.subject.onError(new Exception(reason.toString()));
+    this.settle(rejection(reason));
   }
 
   public void reject(Throwable reason) {
-    if (reason instanceof Exception) {
-      this.subject.onError(reason);
-    } else {
-      this.subject.onError(OnErrorThrowable.from(reason));
+    this.settle(rejection(reason));
+  }
+
+  public void become(final AbstractPromise<T> other) {
+    if (Metrics.ENABLED) {
+      Metrics.INSTANCE.became(this.metricsContext(), other);
     }
+
+    BecomeContinuation<T> continuation = new BecomeContinuation<T>(this, other);
+
+    this.waitOn(continuation);
+    other.register(continuation);
   }
 
-  public void become(AbstractPromise<T> other) {
-    other.subject.subscribe(this);
+  /**
+   * Cancels this promise if it is still pending. None of the handlers
+   * registered on it will be run, and any promises chained from it are
+   * cancelled as well.
+   * <p/>
+   * Cancellation also travels back up the chain: the promise this one was
+   * chained from is cancelled too, unless something else is still waiting
+   * on it, and so on up to the source Observable, which is unsubscribed from.
+   *
+   * @return true if this promise was cancelled, false if it had already been
+   * settled
+   */
+  public boolean cancel() {
+    return this.settle(CANCELLATION);
   }
 
   /* Observable Methods */
   @Override
   public void onCompleted() {
-    this.fulfill(this.value);
+    this.fulfill(this.next);
   }
 
   @Override
@@ -277,17 +411,44 @@ public abstract class AbstractPromise<T> implements Observer<T> {
 
   @Override
   public void onNext(T value) {
-    this.value = value;
+    this.next = value;
   }
 
   /* rx adapter */
   public Observable<T> toObservable() {
-    return this.obs;
+    // created on demand: promises that are never observed never pay for it
+    return Observable.create(new Observable.OnSubscribe<T>() {
+      @Override
+      public void call(final Subscriber<? super T> subscriber) {
+        register(new Continuation<T>() {
+          @Override
+          void run(AbstractPromise<T> promise) {
+            if (subscriber.isUnsubscribed()) {
+              return;
+            }
+
+            if (promise.isFulfilled()) {
+              subscriber.onNext(promise.getValue());
+              subscriber.onCompleted();
+            } else {
+              subscriber.onError(promise.getReason());
+            }
+          }
+        });
+      }
+    });
   }
 
-  /* Private Methods */
+  /* Factory Methods */
+
+  /**
+   * Creates the next promise in a chain. Every then/fail/fin call creates one,
+   * so implementations should override this to construct their own type
+   * directly. The default falls back to reflection, which requires a public
+   * no-arg constructor.
+   */
   @SuppressWarnings("unchecked")
-  private <O> AbstractPromise<O> _create() {
+  protected <O> AbstractPromise<O> newDeferred() {
     try {
       return (AbstractPromise<O>) this.getClass().newInstance();
     } catch (Exception e) {
@@ -295,4 +456,366 @@ public abstract class AbstractPromise<T> implements Observer<T> {
     }
   }
 
+  /* Private Methods */
+  // Settle this promise as part of a PromiseBatch
+  void fulfill(T value, List<Object> batch) {
+    this.settle(value == null ? NULL : value, batch);
+  }
+
+  void reject(Throwable reason, List<Object> batch) {
+    this.settle(rejection(reason), batch);
+  }
+
+  // Settles this promise the same way as other, which must be settled
+  void follow(AbstractPromise<T> other) {
+    if (other.isFulfilled()) {
+      this.fulfill(other.getValue());
+    } else if (other.isCancelled()) {
+      this.cancel();
+    } else {
+      this.reject(other.getReason());
+    }
+  }
+
+  // Records what this promise is waiting on, so that cancelling it can
+  // cancel that too
+  void waitOn(Upstream upstream) {
+    this.upstream = upstream;
+
+    // settled in the meantime
+    if (!this.isPending()) {
+      this.upstream = null;
+
+      if (this.isCancelled()) {
+        cancelIfUnobserved(upstream.cancel());
+      }
+    }
+  }
+
+  // Cancels promise if it is pending with nothing waiting on it, then does the
+  // same for whatever it was waiting on, and so on up its chain. There are no
+  // continuations to run for such a promise, so none of this needs the
+  // trampoline.
+  static void cancelIfUnobserved(AbstractPromise<?> promise) {
+    while (promise != null && STATE_UPDATER.compareAndSet(promise, null, CANCELLATION)) {
+      if (Metrics.ENABLED) {
+        promise.measure(CANCELLATION);
+      }
+
+      Upstream upstream = promise.upstream;
+      promise.upstream = null;
+
+      promise = upstream == null ? null : upstream.cancel();
+    }
+  }
+
+  // Adds a continuation to be run once this promise is settled. If it is
+  // already settled, the continuation is run immediately (or, from inside
+  // another continuation, once that returns).
+  // A continuation pushed before the settling compare-and-set is run by the
+  // settling thread; one that loses the race to it sees the settled state.
+  @SuppressWarnings("unchecked")
+  void register(Continuation<T> continuation) {
+    for (; ; ) {
+      Object state = this.state;
+
+      if (stateOf(state) != STATE.PENDING) {
+        if (state instanceof Rejection) {
+          ((Rejection) state).handled();
+        }
+
+        // may have been linked by an earlier attempt that lost a race
+        continuation.next = null;
+        Trampoline.run(this, continuation);
+        return;
+      }
+
+      continuation.next = (Continuation<T>) state;
+      if (STATE_UPDATER.compareAndSet(this, state, continuation)) {
+        return;
+      }
+    }
+  }
+
+  // Unlinks detached continuations from the top of the pending stack. Ones
+  // further down are left in place, as unlinking them could race with
+  // settlement reordering the stack, but hold on to nothing once detached.
+  // A node's next link never changes while it is in the stack, so a
+  // compare-and-set on the head is enough to pop it.
+  @SuppressWarnings("unchecked")
+  void purge() {
+    for (; ; ) {
+      Object state = this.state;
+
+      if (!(state instanceof Continuation) || !((Continuation<T>) state).isDetached()) {
+        return;
+      }
+
+      STATE_UPDATER.compareAndSet(this, state, ((Continuation<T>) state).next);
+    }
+  }
+
+  // Moves this promise out of the pending state, then runs every continuation
+  // in the order that they were registered. Only the first call has any effect.
+  // When called from inside a continuation, they are run after it returns
+  // instead (see Trampoline).
+  private boolean settle(Object result) {
+    return this.settle(result, null);
+  }
+
+  // As above, but if batch is given the continuations are added to it, as a
+  // (promise, first continuation) pair, instead of being run
+  @SuppressWarnings("unchecked")
+  private boolean settle(Object result, List<Object> batch) {
+    Continuation<T> head;
+
+    for (; ; ) {
+      Object state = this.state;
+
+      if (stateOf(state) != STATE.PENDING) {
+        return false;
+      }
+
+      if (STATE_UPDATER.compareAndSet(this, state, result)) {
+        head = (Continuation<T>) state;
+        break;
+      }
+    }
+
+    if (Metrics.ENABLED) {
+      this.measure(result);
+    }
+
+    if (result instanceof Rejection && result != CANCELLATION) {
+      if (RegistrationSite.ENABLED && this.site() != null) {
+        this.site().addTo(((Rejection) result).reason);
+      }
+
+      // nothing is waiting on it, so it may never be handled
+      if (head == null) {
+        ((Rejection) result).watch(this);
+      }
+    }
+
+    Upstream upstream = this.upstream;
+    if (upstream != null) {
+      this.upstream = null;
+
+      if (result == CANCELLATION) {
+        cancelIfUnobserved(upstream.cancel());
+      }
+    }
+
+    // the stack holds the most recent registration first
+    Continuation<T> reversed = null;
+    while (head != null) {
+      Continuation<T> next = head.next;
+      head.next = reversed;
+      reversed = head;
+      head = next;
+    }
+
+    if (batch == null) {
+      Trampoline.run(this, reversed);
+    } else if (reversed != null) {
+      batch.add(this);
+      batch.add(reversed);
+    }
+
+    return true;
+  }
+
+  private AbstractPromise<T> rejectNew(Rejection rejection) {
+    this.state = rejection;
+    rejection.watch(this);
+
+    if (Metrics.ENABLED) {
+      this.measure(rejection);
+    }
+
+    return this;
+  }
+
+  /* Probes */
+  private RegistrationSite site() {
+    Object probe = this.probe;
+
+    if (probe instanceof Probe) {
+      return ((Probe) probe).site;
+    }
+
+    return probe instanceof RegistrationSite ? (RegistrationSite) probe : null;
+  }
+
+  private Object metricsContext() {
+    Object probe = this.probe;
+    return probe instanceof Probe ? ((Probe) probe).context : probe;
+  }
+
+  private void measure(Object result) {
+    Object context = this.metricsContext();
+
+    if (result == CANCELLATION) {
+      Metrics.INSTANCE.cancelled(context);
+    } else if (result instanceof Rejection) {
+      Metrics.INSTANCE.rejected(context, ((Rejection) result).reason);
+    } else {
+      Metrics.INSTANCE.fulfilled(context);
+    }
+  }
+
+  private static Rejection rejection(Object reason) {
+    if (reason instanceof Throwable) {
+      return rejection((Throwable) reason);
+    }
+
+    return new Rejection(new PromiseRejection(reason));
+  }
+
+  private static Rejection rejection(Throwable reason) {
+    if (reason instanceof Exception) {
+      return new Rejection(reason);
+    }
+
+    return new Rejection(OnErrorThrowable.from(reason));
+  }
+
+  private static STATE stateOf(Object state) {
+    if (state == null || state instanceof Continuation) {
+      return STATE.PENDING;
+    }
+
+    if (state == CANCELLATION) {
+      return STATE.CANCELLED;
+    }
+
+    if (state instanceof Rejection) {
+      return STATE.REJECTED;
+    }
+
+    return STATE.FULFILLED;
+  }
+
+  /* Private Classes */
+  // Marks the reason held by a rejected promise
+  private static final class Rejection {
+    private static final AtomicReferenceFieldUpdater<Rejection, Object> WATCH =
+      AtomicReferenceFieldUpdater.newUpdater(Rejection.class, Object.class, "watch");
+
+    // set once anything has been registered on the rejected promise
+    private static final Object HANDLED = new Object();
+
+    final Throwable reason;
+
+    // null, HANDLED, or the UnhandledRejection tracking the promise until
+    // something is registered on it
+    private volatile Object watch;
+
+    Rejection(Throwable reason) {
+      this.reason = reason;
+    }
+
+    // starts tracking a rejected promise that nothing is waiting on
+    void watch(AbstractPromise<?> promise) {
+      UnhandledRejection tracker = UnhandledRejection.track(promise, this.reason);
+
+      // lost the race with a registration
+      if (tracker != null && !WATCH.compareAndSet(this, null, tracker)) {
+        tracker.handled();
+      }
+    }
+
+    void handled() {
+      if (this.watch == HANDLED) {
+        return;
+      }
+
+      Object watch = WATCH.getAndSet(this, HANDLED);
+      if (watch instanceof UnhandledRejection) {
+        ((UnhandledRejection) watch).handled();
+      }
+    }
+  }
+
+  // Both probes on one promise, when tracing and metrics are both enabled
+  private static final class Probe {
+    final RegistrationSite site;
+    final Object context;
+
+    Probe(RegistrationSite site, Object context) {
+      this.site = site;
+      this.context = context;
+    }
+  }
+
+  // Settles a promise the same way as another, for become()
+  private static final class BecomeContinuation<T> extends Continuation<T> implements Upstream {
+    private final AbstractPromise<T> promise;
+    private final AbstractPromise<T> other;
+
+    private volatile boolean detached;
+
+    BecomeContinuation(AbstractPromise<T> promise, AbstractPromise<T> other) {
+      this.promise = promise;
+      this.other = other;
+    }
+
+    @Override
+    void run(AbstractPromise<T> other) {
+      if (!this.detached) {
+        this.promise.follow(other);
+      }
+    }
+
+    @Override
+    boolean isDetached() {
+      return this.detached;
+    }
+
+    @Override
+    public AbstractPromise<?> cancel() {
+      this.detached = true;
+      this.other.purge();
+
+      return this.other;
+    }
+  }
+
+  // Fulfills a promise with the last value of its source, as Observable.last() would
+  private static final class SourceSubscriber<T> extends Subscriber<T> implements Upstream {
+    private final AbstractPromise<T> promise;
+
+    private boolean hasValue;
+    private T value;
+
+    SourceSubscriber(AbstractPromise<T> promise) {
+      this.promise = promise;
+    }
+
+    @Override
+    public void onCompleted() {
+      if (this.hasValue) {
+        this.promise.fulfill(this.value);
+      } else {
+        this.promise.reject(new NoSuchElementException("Sequence contains no elements"));
+      }
+    }
+
+    @Override
+    public void onError(Throwable e) {
+      this.promise.reject(e);
+    }
+
+    @Override
+    public void onNext(T value) {
+      this.hasValue = true;
+      this.value = value;
+    }
+
+    @Override
+    public AbstractPromise<?> cancel() {
+      this.unsubscribe();
+      return null;
+    }
+  }
 }
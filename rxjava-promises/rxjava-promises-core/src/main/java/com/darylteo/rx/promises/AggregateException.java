@@ -0,0 +1,26 @@
+package com.darylteo.rx.promises;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The reason a promise is rejected with when it depended on several promises
+ * and every one of them was rejected.
+ */
+public class AggregateException extends Exception {
+  private static final long serialVersionUID = 1L;
+
+  private final List<Throwable> reasons;
+
+  public AggregateException(List<Throwable> reasons) {
+    super("All " + reasons.size() + " promises were rejected");
+    this.reasons = Collections.unmodifiableList(reasons);
+  }
+
+  /**
+   * @return the rejection reasons, in the same order as the promises
+   */
+  public List<Throwable> getReasons() {
+    return this.reasons;
+  }
+}
@@ -0,0 +1,268 @@
+package com.darylteo.rx.promises;
+
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.subscriptions.Subscriptions;
+
+import java.util.*;
+
+/**
+ * Maps items to promises with at most a fixed number of them pending at
+ * once, for {@link AbstractPromise#_mapConcurrent} and
+ * {@link AbstractPromise#_streamConcurrent}.
+ * <p/>
+ * Items are taken from the iterator one at a time, and the next is only
+ * started when an earlier promise settles, so neither the items nor their
+ * promises are ever all held at once. Promises that are settled already
+ * hand off to the next item through the trampoline, so a long run of them
+ * uses constant stack.
+ * <p/>
+ * The first rejection ends the whole map: nothing more is started, and the
+ * promises still pending are detached from and cancelled if nothing else is
+ * waiting on them. Cancelling the promise it settles, or unsubscribing from
+ * the stream, ends it the same way.
+ */
+final class BoundedMap<T, R> implements Upstream {
+  private final Iterator<? extends T> items;
+  private final Func1<? super T, ? extends AbstractPromise<? extends R>> function;
+
+  // exactly one of these is set
+  private final AbstractPromise<List<R>> deferred;
+  private final Subscriber<? super R> subscriber;
+
+  // guarded by this
+  private final List<R> results = new ArrayList<R>();
+  private final Set<Slot> pending = new HashSet<Slot>();
+  private int started;
+  private int inFlight;
+  private boolean exhausted;
+  private boolean done;
+
+  private BoundedMap(Iterable<? extends T> items,
+    Func1<? super T, ? extends AbstractPromise<? extends R>> function,
+    AbstractPromise<List<R>> deferred,
+    Subscriber<? super R> subscriber) {
+    this.items = items.iterator();
+    this.function = function;
+    this.deferred = deferred;
+    this.subscriber = subscriber;
+  }
+
+  /**
+   * Fulfills deferred with the values of the promises returned by the
+   * function for each item, in iteration order.
+   */
+  static <T, R> void map(AbstractPromise<List<R>> deferred,
+    Iterable<? extends T> items,
+    int maxInFlight,
+    Func1<? super T, ? extends AbstractPromise<? extends R>> function) {
+    BoundedMap<T, R> map = new BoundedMap<T, R>(items, function, deferred, null);
+
+    deferred.waitOn(map);
+    map.start(maxInFlight);
+  }
+
+  /**
+   * Emits the values of the promises returned by the function for each
+   * item to the subscriber, in the order the promises are fulfilled.
+   */
+  static <T, R> void stream(Subscriber<? super R> subscriber,
+    Iterable<? extends T> items,
+    int maxInFlight,
+    Func1<? super T, ? extends AbstractPromise<? extends R>> function) {
+    final BoundedMap<T, R> map = new BoundedMap<T, R>(items, function, null, subscriber);
+
+    subscriber.add(Subscriptions.create(new Action0() {
+      @Override
+      public void call() {
+        map.stop();
+      }
+    }));
+
+    map.start(maxInFlight);
+  }
+
+  private void start(int maxInFlight) {
+    for (int i = 0; i < maxInFlight && this.launch(); i++) {
+      // each launch starts one item
+    }
+
+    // there may have been nothing to start at all
+    this.completeIfIdle();
+  }
+
+  // starts work on the next item. Returns false if there is none to start
+  @SuppressWarnings("unchecked")
+  private boolean launch() {
+    T item;
+    Slot slot;
+
+    try {
+      synchronized (this) {
+        if (this.done || this.exhausted) {
+          return false;
+        }
+
+        if (!this.items.hasNext()) {
+          this.exhausted = true;
+          return false;
+        }
+
+        item = this.items.next();
+        slot = new Slot(this, this.started++);
+        this.inFlight++;
+      }
+
+      slot.input = this.function.call(item);
+    } catch (RuntimeException e) {
+      this.fail(e);
+      return false;
+    }
+
+    if (slot.input == null) {
+      this.fail(new NullPointerException("mapConcurrent function returned null"));
+      return false;
+    }
+
+    synchronized (this) {
+      if (this.done) {
+        AbstractPromise.cancelIfUnobserved(slot.input);
+        return false;
+      }
+
+      this.pending.add(slot);
+    }
+
+    // runs straight away if the promise is settled already, or from the
+    // trampoline if this is itself inside a continuation
+    ((AbstractPromise<Object>) slot.input).register(slot);
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void settle(Slot slot, AbstractPromise<?> input) {
+    if (!input.isFulfilled()) {
+      this.fail(input.getReason());
+      return;
+    }
+
+    R value = (R) input.getValue();
+
+    synchronized (this) {
+      if (this.done) {
+        return;
+      }
+
+      this.pending.remove(slot);
+      this.inFlight--;
+
+      // emitted under the lock, so values from different threads are
+      // never emitted at once
+      if (this.subscriber != null) {
+        this.subscriber.onNext(value);
+      } else {
+        while (this.results.size() <= slot.index) {
+          this.results.add(null);
+        }
+
+        this.results.set(slot.index, value);
+      }
+    }
+
+    if (!this.launch()) {
+      this.completeIfIdle();
+    }
+  }
+
+  private void completeIfIdle() {
+    synchronized (this) {
+      if (this.done || !this.exhausted || this.inFlight > 0) {
+        return;
+      }
+
+      this.done = true;
+    }
+
+    // every value was emitted or written before done was set
+    if (this.subscriber != null) {
+      this.subscriber.onCompleted();
+    } else {
+      this.deferred.fulfill(Collections.unmodifiableList(this.results));
+    }
+  }
+
+  private void fail(Throwable reason) {
+    if (!this.stop()) {
+      return;
+    }
+
+    if (this.subscriber != null) {
+      this.subscriber.onError(reason);
+    } else {
+      this.deferred.reject(reason);
+    }
+  }
+
+  @Override
+  public AbstractPromise<?> cancel() {
+    this.stop();
+    return null;
+  }
+
+  // ends the map, detaching from every pending promise and cancelling those
+  // that nothing else is waiting on. Returns false if it had already ended
+  private boolean stop() {
+    List<Slot> slots;
+
+    synchronized (this) {
+      if (this.done) {
+        return false;
+      }
+
+      this.done = true;
+      slots = new ArrayList<Slot>(this.pending);
+      this.pending.clear();
+    }
+
+    for (Slot slot : slots) {
+      slot.detach();
+      AbstractPromise.cancelIfUnobserved(slot.input);
+    }
+
+    return true;
+  }
+
+  /* Private Classes */
+  private static final class Slot extends Continuation<Object> {
+    private volatile BoundedMap<?, ?> map;
+    private final int index;
+
+    // set before the slot is registered
+    AbstractPromise<?> input;
+
+    Slot(BoundedMap<?, ?> map, int index) {
+      this.map = map;
+      this.index = index;
+    }
+
+    @Override
+    void run(AbstractPromise<Object> promise) {
+      BoundedMap<?, ?> map = this.map;
+
+      if (map != null) {
+        map.settle(this, promise);
+      }
+    }
+
+    @Override
+    boolean isDetached() {
+      return this.map == null;
+    }
+
+    void detach() {
+      this.map = null;
+      this.input.purge();
+    }
+  }
+}
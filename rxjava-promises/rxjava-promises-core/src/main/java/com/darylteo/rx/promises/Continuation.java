@@ -0,0 +1,24 @@
+package com.darylteo.rx.promises;
+
+/**
+ * A callback waiting on the settlement of a promise.
+ * <p/>
+ * Pending continuations are kept by their promise as an intrusive linked
+ * stack (through {@link #next}), so registering one costs a single allocation.
+ */
+abstract class Continuation<T> {
+  Continuation<T> next;
+
+  /**
+   * Invoked exactly once, after the promise has been fulfilled or rejected.
+   */
+  abstract void run(AbstractPromise<T> promise);
+
+  /**
+   * A detached continuation no longer cares about its promise. It is skipped
+   * when run, and may be unlinked before then (see AbstractPromise.purge).
+   */
+  boolean isDetached() {
+    return false;
+  }
+}
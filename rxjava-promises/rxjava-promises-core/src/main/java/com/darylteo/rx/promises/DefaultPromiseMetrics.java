@@ -0,0 +1,354 @@
+package com.darylteo.rx.promises;
+
+import rx.functions.Function;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link PromiseMetrics} that keeps counts of promises by outcome, and
+ * histograms of how long promises take to settle, how long handlers take to
+ * run and how long chains get. Chained promises are also counted by the
+ * class of the handler that they were chained with, which stands in for the
+ * place that they were chained from. Handlers that wrap another, such as
+ * Groovy closures, are counted by the class of the one they wrap (see
+ * {@link HandlerAdapter}).
+ * <p/>
+ * Install it with
+ * {@code -Dcom.darylteo.rx.promises.metrics=com.darylteo.rx.promises.DefaultPromiseMetrics}
+ * and read it through {@link Promises#getMetrics()}. Every update is a
+ * single atomic operation, with no locking.
+ */
+public class DefaultPromiseMetrics implements PromiseMetrics {
+  private final AtomicLong created = new AtomicLong();
+  private final AtomicLong fulfilled = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong cancelled = new AtomicLong();
+  private final AtomicLong became = new AtomicLong();
+  private final AtomicLong handlerFailures = new AtomicLong();
+
+  private final Histogram settleNanos = new Histogram();
+  private final Histogram handlerNanos = new Histogram();
+  private final Histogram chainDepth = new Histogram();
+
+  // handlers that threw, by class. Handlers are usually anonymous classes,
+  // so this tells apart the places that they were registered
+  private final ConcurrentMap<String, AtomicLong> failuresByHandler = new ConcurrentHashMap<String, AtomicLong>();
+
+  // chained promises, by the class of the handler they were chained with
+  private final ConcurrentMap<String, SiteCounts> sites = new ConcurrentHashMap<String, SiteCounts>();
+
+  /* PromiseMetrics */
+  @Override
+  public Object created(AbstractPromise<?> promise) {
+    this.created.incrementAndGet();
+    return new Context();
+  }
+
+  @Override
+  public void chained(Object sourceContext, Object deferredContext, Function handler) {
+    int depth = ((Context) sourceContext).depth + 1;
+
+    ((Context) deferredContext).depth = depth;
+    this.chainDepth.record(depth);
+
+    if (handler != null) {
+      ((Context) deferredContext).site = this.site(nameOf(handler));
+    }
+  }
+
+  @Override
+  public void became(Object context, AbstractPromise<?> other) {
+    this.became.incrementAndGet();
+  }
+
+  @Override
+  public void fulfilled(Object context) {
+    this.fulfilled.incrementAndGet();
+    this.settled(context);
+  }
+
+  @Override
+  public void rejected(Object context, Throwable reason) {
+    this.rejected.incrementAndGet();
+    this.settled(context);
+
+    SiteCounts site = ((Context) context).site;
+    if (site != null) {
+      site.rejected.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void cancelled(Object context) {
+    this.cancelled.incrementAndGet();
+    this.settled(context);
+  }
+
+  @Override
+  public void handlerRun(Function handler, long nanos, Throwable failure) {
+    this.handlerNanos.record(nanos);
+
+    if (failure != null) {
+      this.handlerFailures.incrementAndGet();
+
+      String name = nameOf(handler);
+      AtomicLong count = this.failuresByHandler.get(name);
+
+      if (count == null) {
+        AtomicLong added = this.failuresByHandler.putIfAbsent(name, count = new AtomicLong());
+        if (added != null) {
+          count = added;
+        }
+      }
+
+      count.incrementAndGet();
+    }
+  }
+
+  private void settled(Object context) {
+    this.settleNanos.record(System.nanoTime() - ((Context) context).created);
+
+    SiteCounts site = ((Context) context).site;
+    if (site != null) {
+      site.settled.incrementAndGet();
+    }
+  }
+
+  // the class of the handler, or of what it wraps if it is an adapter
+  private static String nameOf(Function handler) {
+    if (handler instanceof HandlerAdapter) {
+      return ((HandlerAdapter) handler).getHandlerClass().getName();
+    }
+
+    return handler.getClass().getName();
+  }
+
+  private SiteCounts site(String name) {
+    SiteCounts site = this.sites.get(name);
+
+    if (site == null) {
+      SiteCounts added = this.sites.putIfAbsent(name, site = new SiteCounts());
+      if (added != null) {
+        site = added;
+      }
+    }
+
+    return site;
+  }
+
+  /* Counters */
+  public long getCreated() {
+    return this.created.get();
+  }
+
+  public long getFulfilled() {
+    return this.fulfilled.get();
+  }
+
+  public long getRejected() {
+    return this.rejected.get();
+  }
+
+  public long getCancelled() {
+    return this.cancelled.get();
+  }
+
+  /**
+   * @return the number of promises created but not yet settled, including
+   * ones that have been garbage collected without ever being settled
+   */
+  public long getPending() {
+    return this.getCreated() - this.getFulfilled() - this.getRejected() - this.getCancelled();
+  }
+
+  /**
+   * @return the number of times a promise has been made to follow another,
+   * usually because a handler returned a promise
+   */
+  public long getBecame() {
+    return this.became.get();
+  }
+
+  public long getHandlerFailures() {
+    return this.handlerFailures.get();
+  }
+
+  /**
+   * @return the number of times handlers of each class have thrown
+   */
+  public Map<String, Long> getHandlerFailuresByClass() {
+    Map<String, Long> failures = new HashMap<String, Long>();
+
+    for (Map.Entry<String, AtomicLong> entry : this.failuresByHandler.entrySet()) {
+      failures.put(entry.getKey(), entry.getValue().get());
+    }
+
+    return failures;
+  }
+
+  /**
+   * @return the fraction of settled promises that were rejected, by the
+   * class of the handler that they were chained with
+   */
+  public Map<String, Double> getRejectionRateBySite() {
+    Map<String, Double> rates = new HashMap<String, Double>();
+
+    for (Map.Entry<String, SiteCounts> entry : this.sites.entrySet()) {
+      // read in this order, so the rate is never above 1
+      long rejected = entry.getValue().rejected.get();
+      long settled = entry.getValue().settled.get();
+
+      if (settled > 0) {
+        rates.put(entry.getKey(), (double) rejected / settled);
+      }
+    }
+
+    return rates;
+  }
+
+  /* Histograms */
+
+  /**
+   * @return the time from creation to settlement of each promise, in nanoseconds
+   */
+  public Histogram getSettleNanos() {
+    return this.settleNanos;
+  }
+
+  /**
+   * @return the time taken by each then/fail/fin handler, in nanoseconds
+   */
+  public Histogram getHandlerNanos() {
+    return this.handlerNanos;
+  }
+
+  /**
+   * @return the position of each chained promise in its chain, the first
+   * promise chained from a promise that was not itself chained being 1
+   */
+  public Histogram getChainDepth() {
+    return this.chainDepth;
+  }
+
+  @Override
+  public String toString() {
+    return "created=" + this.getCreated()
+      + " pending=" + this.getPending()
+      + " fulfilled=" + this.getFulfilled()
+      + " rejected=" + this.getRejected()
+      + " cancelled=" + this.getCancelled()
+      + " handlerFailures=" + this.getHandlerFailures()
+      + " settleNanos=[" + this.settleNanos + "]"
+      + " handlerNanos=[" + this.handlerNanos + "]"
+      + " chainDepth=[" + this.chainDepth + "]";
+  }
+
+  /* Private Classes */
+  private static final class Context {
+    final long created = System.nanoTime();
+
+    // written before the promise it belongs to is handed out
+    int depth;
+    SiteCounts site;
+  }
+
+  private static final class SiteCounts {
+    final AtomicLong settled = new AtomicLong();
+    final AtomicLong rejected = new AtomicLong();
+  }
+
+  /**
+   * A histogram of non-negative values in power-of-two buckets: bucket 0
+   * counts zeros, and bucket i counts values from 2^(i-1) to 2^i - 1.
+   * Percentiles are only as precise as that, which is enough to tell
+   * microseconds from milliseconds at a fixed, small size.
+   */
+  public static final class Histogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(65);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+      if (value < 0) {
+        value = 0;
+      }
+
+      this.buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+      this.count.incrementAndGet();
+
+      long max;
+      while (value > (max = this.max.get()) && !this.max.compareAndSet(max, value)) {
+        // retry
+      }
+    }
+
+    public long getCount() {
+      return this.count.get();
+    }
+
+    public long getMax() {
+      return this.max.get();
+    }
+
+    /**
+     * @return the count of each bucket
+     */
+    public long[] getBuckets() {
+      long[] buckets = new long[this.buckets.length()];
+
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = this.buckets.get(i);
+      }
+
+      return buckets;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return an upper bound for the value at the given percentile, or 0
+     * if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+      long[] buckets = this.getBuckets();
+
+      long total = 0;
+      for (long bucket : buckets) {
+        total += bucket;
+      }
+
+      long rank = (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100);
+      long seen = 0;
+
+      for (int i = 0; i < buckets.length; i++) {
+        seen += buckets[i];
+
+        if (seen >= rank && seen > 0) {
+          return Math.min(upperBound(i), this.getMax());
+        }
+      }
+
+      return 0;
+    }
+
+    private static long upperBound(int bucket) {
+      if (bucket == 0) {
+        return 0;
+      }
+
+      return bucket == 64 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + this.getCount()
+        + " p50=" + this.getValueAtPercentile(50)
+        + " p99=" + this.getValueAtPercentile(99)
+        + " max=" + this.getMax();
+    }
+  }
+}
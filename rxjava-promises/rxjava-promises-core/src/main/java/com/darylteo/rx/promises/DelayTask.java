@@ -0,0 +1,40 @@
+package com.darylteo.rx.promises;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fulfills a promise when run, for {@link AbstractPromise#_delay}. Cancelling
+ * the promise removes the task from its timer.
+ */
+final class DelayTask<T> implements Runnable, Upstream {
+  private final AbstractPromise<T> deferred;
+  private final T value;
+
+  private volatile Timer.Timeout timeout;
+
+  DelayTask(AbstractPromise<T> deferred, T value) {
+    this.deferred = deferred;
+    this.value = value;
+  }
+
+  void start(Timer timer, long delay, TimeUnit unit) {
+    this.deferred.waitOn(this);
+    this.timeout = timer.schedule(this, delay, unit);
+  }
+
+  @Override
+  public void run() {
+    this.deferred.fulfill(this.value);
+  }
+
+  @Override
+  public AbstractPromise<?> cancel() {
+    Timer.Timeout timeout = this.timeout;
+
+    if (timeout != null) {
+      timeout.cancel();
+    }
+
+    return null;
+  }
+}
@@ -0,0 +1,17 @@
+package com.darylteo.rx.promises;
+
+/**
+ * A then/fail/fin handler that adapts a handler of some other kind, such as
+ * a Groovy closure, to the function types the promise core understands.
+ * <p/>
+ * Metrics tell apart the places that handlers are registered by the class
+ * of each handler. Every handler an adapter wraps shares the adapter's own
+ * class, so adapters implement this to be grouped by the class of what they
+ * wrap instead.
+ */
+public interface HandlerAdapter {
+  /**
+   * @return the class of the wrapped handler
+   */
+  Class<?> getHandlerClass();
+}
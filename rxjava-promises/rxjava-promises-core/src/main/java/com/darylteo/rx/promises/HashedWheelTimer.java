@@ -0,0 +1,354 @@
+package com.darylteo.rx.promises;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A timer for large numbers of short-lived timeouts, most of which are
+ * cancelled before they expire.
+ * <p/>
+ * Tasks are hashed by deadline into a fixed ring of buckets that a single
+ * worker thread sweeps one bucket per tick. Scheduling and cancelling are
+ * constant time and lock-free, and a cancelled task is unlinked from its
+ * bucket by the next tick, so cancelled tasks never pile up in the wheel.
+ * The price is precision: tasks run up to one tick late.
+ * <p/>
+ * The worker thread is a daemon. It is started by the first task, and parks
+ * while no tasks are scheduled.
+ */
+public final class HashedWheelTimer implements Timer {
+  private static final int INIT = 0;
+  private static final int STARTED = 1;
+  private static final int STOPPED = 2;
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<HashedWheelTimer> WORKER_STATE =
+    AtomicIntegerFieldUpdater.newUpdater(HashedWheelTimer.class, "workerState");
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<HashedWheelTimer> SIZE =
+    AtomicIntegerFieldUpdater.newUpdater(HashedWheelTimer.class, "size");
+
+  private final long tickNanos;
+  private final Entry[] wheel;
+  private final int mask;
+  private final long startTime;
+
+  private final Queue<Entry> pending = new ConcurrentLinkedQueue<Entry>();
+  private final Queue<Entry> cancelled = new ConcurrentLinkedQueue<Entry>();
+
+  private final Thread worker;
+  private volatile int workerState = INIT;
+  private volatile boolean idle;
+
+  // scheduled and not yet run or reclaimed. Decremented by the worker, once
+  // per sweep rather than once per entry
+  private volatile int size;
+
+  /* Shared Instance */
+  private static final class Shared {
+    static final HashedWheelTimer INSTANCE = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 512);
+  }
+
+  /**
+   * @return the timer used by promises unless another is given. It ticks
+   * every 10 milliseconds.
+   * <p/>
+   * Every task on this timer runs on its one worker thread, and so do the
+   * handlers of the promises those tasks settle, unless the promises have an
+   * executor (see {@link AbstractPromise#_on}). A slow handler therefore
+   * delays every other timeout, delay and retry in the JVM: hand slow work
+   * off to an executor. This timer cannot be stopped.
+   */
+  public static HashedWheelTimer shared() {
+    return Shared.INSTANCE;
+  }
+
+  /* Constructor */
+
+  /**
+   * @param tickDuration  the time between sweeps, and so the precision of the timer
+   * @param ticksPerWheel the number of buckets, rounded up to a power of two
+   */
+  public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+    if (tickDuration <= 0) {
+      throw new IllegalArgumentException("tickDuration must be greater than 0");
+    }
+
+    if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+      throw new IllegalArgumentException("ticksPerWheel must be between 1 and 2^30");
+    }
+
+    int size = 1;
+    while (size < ticksPerWheel) {
+      size <<= 1;
+    }
+
+    this.tickNanos = unit.toNanos(tickDuration);
+    this.wheel = new Entry[size];
+    this.mask = size - 1;
+    this.startTime = System.nanoTime();
+
+    this.worker = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        work();
+      }
+    }, "promise-timer");
+    this.worker.setDaemon(true);
+  }
+
+  /* Timer Methods */
+  @Override
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    if (task == null) {
+      throw new NullPointerException("task");
+    }
+
+    this.start();
+
+    // rounded up, so that tasks never run early
+    long deadline = System.nanoTime() - this.startTime + unit.toNanos(Math.max(delay, 0));
+    Entry entry = new Entry(this, task, (deadline + this.tickNanos - 1) / this.tickNanos);
+
+    SIZE.incrementAndGet(this);
+    this.pending.add(entry);
+    if (this.idle) {
+      LockSupport.unpark(this.worker);
+    }
+
+    return entry;
+  }
+
+  /**
+   * @return the number of tasks that have been scheduled and not yet run or
+   * reclaimed. Cancelled tasks are reclaimed by the next tick.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Stops the worker thread. Tasks that have not run yet never will.
+   *
+   * @throws UnsupportedOperationException if this is the {@link #shared()} timer
+   */
+  public void stop() {
+    if (this == Shared.INSTANCE) {
+      throw new UnsupportedOperationException("The shared timer cannot be stopped");
+    }
+
+    if (WORKER_STATE.getAndSet(this, STOPPED) == STARTED) {
+      LockSupport.unpark(this.worker);
+    }
+  }
+
+  /* Private Methods */
+  private void start() {
+    switch (this.workerState) {
+      case INIT:
+        if (WORKER_STATE.compareAndSet(this, INIT, STARTED)) {
+          this.worker.start();
+        }
+        break;
+      case STOPPED:
+        throw new IllegalStateException("Timer has been stopped");
+    }
+  }
+
+  private void work() {
+    long tick = this.currentTick();
+    int live = 0;
+
+    while (this.workerState == STARTED) {
+      live -= this.unlinkCancelled();
+      live += this.transferPending(tick);
+
+      if (live == 0) {
+        // nothing to sweep: sleep until a task is scheduled. idle is set
+        // before pending is checked again, so a task added in between is
+        // either seen here or unparks this thread
+        this.idle = true;
+        if (this.pending.isEmpty() && this.workerState == STARTED) {
+          LockSupport.park(this);
+        }
+        this.idle = false;
+
+        tick = this.currentTick();
+        continue;
+      }
+
+      long current = this.currentTick();
+      if (current <= tick) {
+        LockSupport.parkNanos(this, (tick + 1) * this.tickNanos - (System.nanoTime() - this.startTime));
+        continue;
+      }
+
+      // catch up on every tick that has passed
+      while (tick < current) {
+        tick++;
+        live -= this.expire(tick);
+      }
+    }
+  }
+
+  private long currentTick() {
+    return (System.nanoTime() - this.startTime) / this.tickNanos;
+  }
+
+  // moves newly scheduled entries into the wheel, given that every tick up
+  // to and including the given one has been swept
+  private int transferPending(long tick) {
+    int count = 0;
+    int skipped = 0;
+    Entry entry;
+
+    while ((entry = this.pending.poll()) != null) {
+      // cancelled before it reached the wheel
+      if (entry.state != Entry.INIT) {
+        skipped++;
+        continue;
+      }
+
+      // overdue entries go in the next bucket to be swept
+      long target = Math.max(entry.deadline, tick + 1);
+      entry.rounds = (target - tick - 1) / this.wheel.length;
+      this.link(entry, (int) (target & this.mask));
+      count++;
+    }
+
+    this.reclaimed(skipped);
+    return count;
+  }
+
+  private int unlinkCancelled() {
+    int count = 0;
+    Entry entry;
+
+    while ((entry = this.cancelled.poll()) != null) {
+      if (entry.bucket >= 0) {
+        this.unlink(entry);
+        count++;
+      }
+    }
+
+    this.reclaimed(count);
+    return count;
+  }
+
+  private int expire(long tick) {
+    int count = 0;
+    Entry entry = this.wheel[(int) (tick & this.mask)];
+
+    while (entry != null) {
+      Entry next = entry.next;
+
+      if (entry.rounds <= 0) {
+        this.unlink(entry);
+        count++;
+        entry.expire();
+      } else {
+        entry.rounds--;
+      }
+
+      entry = next;
+    }
+
+    this.reclaimed(count);
+    return count;
+  }
+
+  private void reclaimed(int count) {
+    if (count > 0) {
+      SIZE.addAndGet(this, -count);
+    }
+  }
+
+  private void link(Entry entry, int bucket) {
+    Entry head = this.wheel[bucket];
+
+    entry.bucket = bucket;
+    entry.next = head;
+    if (head != null) {
+      head.prev = entry;
+    }
+
+    this.wheel[bucket] = entry;
+  }
+
+  private void unlink(Entry entry) {
+    if (entry.prev != null) {
+      entry.prev.next = entry.next;
+    } else {
+      this.wheel[entry.bucket] = entry.next;
+    }
+
+    if (entry.next != null) {
+      entry.next.prev = entry.prev;
+    }
+
+    entry.bucket = -1;
+    entry.prev = null;
+    entry.next = null;
+  }
+
+  /* Private Classes */
+  private static final class Entry implements Timeout {
+    static final int INIT = 0;
+    static final int CANCELLED = 1;
+    static final int EXPIRED = 2;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Entry> STATE =
+      AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+    private final HashedWheelTimer timer;
+    private final long deadline;
+    private Runnable task;
+
+    volatile int state = INIT;
+
+    // only touched by the worker thread
+    long rounds;
+    int bucket = -1;
+    Entry prev;
+    Entry next;
+
+    Entry(HashedWheelTimer timer, Runnable task, long deadline) {
+      this.timer = timer;
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public boolean cancel() {
+      if (!STATE.compareAndSet(this, INIT, CANCELLED)) {
+        return false;
+      }
+
+      this.task = null;
+      this.timer.cancelled.add(this);
+      return true;
+    }
+
+    void expire() {
+      if (!STATE.compareAndSet(this, INIT, EXPIRED)) {
+        return;
+      }
+
+      Runnable task = this.task;
+      this.task = null;
+
+      try {
+        task.run();
+      } catch (Throwable e) {
+        // a failing task must not take the timer down with it
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+      }
+    }
+  }
+}
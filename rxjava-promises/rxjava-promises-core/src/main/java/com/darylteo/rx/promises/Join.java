@@ -0,0 +1,123 @@
+package com.darylteo.rx.promises;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Waits on a number of promises at once, for {@link AbstractPromise#_all} and
+ * {@link AbstractPromise#_allSettled}.
+ * <p/>
+ * Results are written straight into an array sized up front, and completion
+ * is tracked with a single atomic countdown, so each input costs one small
+ * continuation and constant work however many inputs there are.
+ */
+final class Join<T> {
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<Join> REMAINING =
+    AtomicIntegerFieldUpdater.newUpdater(Join.class, "remaining");
+
+  private final AbstractPromise<List<T>> deferred;
+  private final Object[] results;
+
+  // when true, rejections are counted like fulfillments rather than
+  // rejecting the joined promise
+  private final boolean settled;
+
+  private volatile int remaining;
+
+  private Join(AbstractPromise<List<T>> deferred, Object[] results, boolean settled) {
+    this.deferred = deferred;
+    this.results = results;
+    this.settled = settled;
+    this.remaining = results.length;
+  }
+
+  /**
+   * Fulfills deferred with the values of all the given promises, in order,
+   * or rejects it with the reason of the first one to be rejected.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> void all(AbstractPromise<List<T>> deferred, Iterable<? extends AbstractPromise<? extends T>> promises) {
+    Object[] inputs = toArray(promises);
+    Join<T> join = new Join<T>(deferred, new Object[inputs.length], false);
+
+    join.start(inputs);
+  }
+
+  /**
+   * Fulfills deferred with the given promises, in order, once every one of
+   * them has been either fulfilled or rejected.
+   */
+  static <P extends AbstractPromise<?>> void allSettled(AbstractPromise<List<P>> deferred, Iterable<? extends P> promises) {
+    Object[] inputs = toArray(promises);
+
+    // the settled promises are themselves the results
+    Join<P> join = new Join<P>(deferred, inputs, true);
+
+    join.start(inputs);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void start(Object[] inputs) {
+    if (inputs.length == 0) {
+      this.complete();
+      return;
+    }
+
+    // the countdown is already set, so inputs that are settled already
+    // cannot complete the join early
+    for (int i = 0; i < inputs.length; i++) {
+      ((AbstractPromise<Object>) inputs[i]).register(new Slot(this, i));
+    }
+  }
+
+  private void settle(AbstractPromise<Object> input, int index) {
+    if (input.isFulfilled()) {
+      if (!this.settled) {
+        this.results[index] = input.getValue();
+      }
+    } else if (!this.settled) {
+      this.deferred.reject(input.getReason());
+      return;
+    }
+
+    // the decrement publishes the write above to whichever thread completes
+    if (REMAINING.decrementAndGet(this) == 0) {
+      this.complete();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void complete() {
+    this.deferred.fulfill(Collections.unmodifiableList(Arrays.asList((T[]) this.results)));
+  }
+
+  private static Object[] toArray(Iterable<?> promises) {
+    if (promises instanceof Collection) {
+      return ((Collection<?>) promises).toArray();
+    }
+
+    List<Object> list = new ArrayList<Object>();
+    for (Object promise : promises) {
+      list.add(promise);
+    }
+
+    return list.toArray();
+  }
+
+  /* Private Classes */
+  private static final class Slot extends Continuation<Object> {
+    private final Join<?> join;
+    private final int index;
+
+    Slot(Join<?> join, int index) {
+      this.join = join;
+      this.index = index;
+    }
+
+    @Override
+    void run(AbstractPromise<Object> promise) {
+      this.join.settle(promise, this.index);
+    }
+  }
+}
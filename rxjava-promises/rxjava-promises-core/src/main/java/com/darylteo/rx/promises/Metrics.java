@@ -0,0 +1,31 @@
+package com.darylteo.rx.promises;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Holds the installed {@link PromiseMetrics}, if any.
+ */
+final class Metrics {
+  static final PromiseMetrics INSTANCE = load();
+
+  static final boolean ENABLED = INSTANCE != null;
+
+  private Metrics() {
+  }
+
+  private static PromiseMetrics load() {
+    String name = System.getProperty("com.darylteo.rx.promises.metrics");
+
+    if (name != null) {
+      try {
+        return (PromiseMetrics) Class.forName(name).newInstance();
+      } catch (Exception e) {
+        throw new IllegalArgumentException("Could not install PromiseMetrics " + name, e);
+      }
+    }
+
+    Iterator<PromiseMetrics> found = ServiceLoader.load(PromiseMetrics.class).iterator();
+    return found.hasNext() ? found.next() : null;
+  }
+}
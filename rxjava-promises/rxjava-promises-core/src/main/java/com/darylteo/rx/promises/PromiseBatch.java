@@ -0,0 +1,103 @@
+package com.darylteo.rx.promises;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Settles a number of promises together.
+ * <p/>
+ * Every promise is settled in one pass before any of their handlers are
+ * run, and the handlers are then run together: on the calling thread, or as
+ * a single task handed to an executor. Handing a batch of responses from an
+ * I/O thread to a worker this way costs one task rather than one per
+ * promise.
+ * <p/>
+ * A batch can be reused once it has been settled.
+ */
+public final class PromiseBatch {
+  // pairs of (promise, value), with rejections wrapped in a Failure
+  private final List<Object> entries = new ArrayList<Object>();
+
+  public <T> PromiseBatch fulfill(AbstractPromise<T> promise, T value) {
+    this.entries.add(promise);
+    this.entries.add(value);
+
+    return this;
+  }
+
+  public PromiseBatch reject(AbstractPromise<?> promise, Throwable reason) {
+    this.entries.add(promise);
+    this.entries.add(new Failure(reason));
+
+    return this;
+  }
+
+  public int size() {
+    return this.entries.size() / 2;
+  }
+
+  /**
+   * Settles every promise in this batch, then runs their handlers on this
+   * thread.
+   */
+  public void settle() {
+    Trampoline.runAll(this.complete());
+  }
+
+  /**
+   * Settles every promise in this batch, then hands all their handlers to
+   * the executor as a single task. If the executor will not take it, the
+   * handlers are run on this thread instead, as the promises have already
+   * been settled.
+   */
+  public void settle(Executor executor) {
+    final List<Object> continuations = this.complete();
+
+    if (continuations.isEmpty()) {
+      return;
+    }
+
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        Trampoline.runAll(continuations);
+      }
+    };
+
+    try {
+      executor.execute(task);
+    } catch (RuntimeException e) {
+      task.run();
+    }
+  }
+
+  // settles every promise, returning their continuations
+  @SuppressWarnings("unchecked")
+  private List<Object> complete() {
+    List<Object> continuations = new ArrayList<Object>(this.entries.size());
+
+    for (int i = 0; i < this.entries.size(); i += 2) {
+      AbstractPromise<Object> promise = (AbstractPromise<Object>) this.entries.get(i);
+      Object value = this.entries.get(i + 1);
+
+      if (value instanceof Failure) {
+        promise.reject(((Failure) value).reason, continuations);
+      } else {
+        promise.fulfill(value, continuations);
+      }
+    }
+
+    this.entries.clear();
+    return continuations;
+  }
+
+  /* Private Classes */
+  private static final class Failure {
+    final Throwable reason;
+
+    Failure(Throwable reason) {
+      this.reason = reason;
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package com.darylteo.rx.promises;
+
+import rx.functions.Function;
+
+/**
+ * Receives the lifecycle events of every promise, for monitoring.
+ * <p/>
+ * At most one implementation is installed, when the promise classes are
+ * loaded. It is either named by the system property
+ * {@code com.darylteo.rx.promises.metrics} (for example
+ * {@code -Dcom.darylteo.rx.promises.metrics=com.darylteo.rx.promises.DefaultPromiseMetrics}),
+ * or found through {@link java.util.ServiceLoader}. It needs a public no-arg
+ * constructor. When none is installed, promises skip every hook on a single
+ * static final flag. The installed instance is returned by
+ * {@link Promises#getMetrics()}.
+ * <p/>
+ * Hooks are called on whichever thread causes the event, so implementations
+ * must be thread-safe and quick.
+ */
+public interface PromiseMetrics {
+  /**
+   * A promise has been created. Called from its constructor.
+   *
+   * @return any object, handed back to the other hooks for this promise
+   */
+  Object created(AbstractPromise<?> promise);
+
+  /**
+   * deferred has been created by a then, fail or fin call on source.
+   *
+   * @param handler the first handler given to that call. Handlers are
+   *                usually anonymous classes, so its class tells apart the
+   *                places that promises are chained from
+   */
+  void chained(Object sourceContext, Object deferredContext, Function handler);
+
+  /**
+   * promise has been made to follow other.
+   */
+  void became(Object context, AbstractPromise<?> other);
+
+  void fulfilled(Object context);
+
+  void rejected(Object context, Throwable reason);
+
+  void cancelled(Object context);
+
+  /**
+   * A then, fail or fin handler has been run.
+   *
+   * @param failure what the handler threw, or null if it returned normally
+   */
+  void handlerRun(Function handler, long nanos, Throwable failure);
+}
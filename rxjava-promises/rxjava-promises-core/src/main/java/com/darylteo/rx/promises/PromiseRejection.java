@@ -0,0 +1,52 @@
+package com.darylteo.rx.promises;
+
+/**
+ * The reason a promise is rejected with when it is rejected with something
+ * other than an exception, such as a string or an error code.
+ * <p/>
+ * These are cheap to create: the original reason is kept as is, the message
+ * is only formatted from it when asked for, and no stack trace is captured.
+ * Run with {@code -Dcom.darylteo.rx.promises.rejectionStackTraces=true} to
+ * capture stack traces when debugging.
+ */
+public class PromiseRejection extends Exception {
+  private static final long serialVersionUID = 1L;
+
+  private static final boolean STACK_TRACES = Boolean.getBoolean("com.darylteo.rx.promises.rejectionStackTraces");
+
+  private final Object reason;
+
+  // formatted on first use
+  private String message;
+
+  public PromiseRejection(Object reason) {
+    this.reason = reason;
+  }
+
+  /**
+   * @return the object that the promise was rejected with
+   */
+  public Object getReason() {
+    return this.reason;
+  }
+
+  @Override
+  public String getMessage() {
+    String message = this.message;
+
+    if (message == null) {
+      message = this.message = String.valueOf(this.reason);
+    }
+
+    return message;
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    if (STACK_TRACES) {
+      return super.fillInStackTrace();
+    }
+
+    return this;
+  }
+}
@@ -0,0 +1,99 @@
+package com.darylteo.rx.promises;
+
+import rx.functions.Action1;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings shared by every promise.
+ */
+public final class Promises {
+  private static volatile Action1<? super Throwable> unhandledRejectionHandler;
+  private static volatile long unhandledRejectionGraceNanos;
+
+  private Promises() {
+  }
+
+  /* ================== */
+  /* Batches */
+
+  /**
+   * Fulfills each promise with its value, then runs all of their handlers
+   * on this thread. No handler is run until every promise is fulfilled.
+   *
+   * @see PromiseBatch
+   */
+  public static <T> void fulfillAll(Map<? extends AbstractPromise<T>, ? extends T> values) {
+    batch(values).settle();
+  }
+
+  /**
+   * Fulfills each promise with its value, then hands all of their handlers
+   * to the executor as a single task.
+   *
+   * @see PromiseBatch
+   */
+  public static <T> void fulfillAll(Map<? extends AbstractPromise<T>, ? extends T> values, Executor executor) {
+    batch(values).settle(executor);
+  }
+
+  private static <T> PromiseBatch batch(Map<? extends AbstractPromise<T>, ? extends T> values) {
+    PromiseBatch batch = new PromiseBatch();
+
+    for (Map.Entry<? extends AbstractPromise<T>, ? extends T> entry : values.entrySet()) {
+      batch.fulfill(entry.getKey(), entry.getValue());
+    }
+
+    return batch;
+  }
+
+  /* ================== */
+  /* Metrics */
+
+  /**
+   * @return the installed {@link PromiseMetrics}, or null if there is none
+   */
+  public static PromiseMetrics getMetrics() {
+    return Metrics.INSTANCE;
+  }
+
+  /* ================== */
+  /* Unhandled Rejections */
+
+  /**
+   * Sets the handler that is called with the reason of every promise that is
+   * rejected but never handled: a promise that nothing is waiting on when it
+   * is rejected, and that is garbage collected before anything is chained
+   * from it.
+   * <p/>
+   * Promises that something is waiting on when they are rejected are never
+   * tracked, so this costs nothing for them. The handler is called from a
+   * background thread.
+   *
+   * @param handler the handler, or null to stop tracking
+   */
+  public static void setUnhandledRejectionHandler(Action1<? super Throwable> handler) {
+    setUnhandledRejectionHandler(handler, 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * As {@link #setUnhandledRejectionHandler(Action1)}, but a rejected promise
+   * is also reported if nothing has been chained from it after the given
+   * grace period, even if it is still reachable. A promise is only ever
+   * reported once.
+   */
+  public static void setUnhandledRejectionHandler(Action1<? super Throwable> handler, long gracePeriod, TimeUnit unit) {
+    unhandledRejectionGraceNanos = unit.toNanos(Math.max(gracePeriod, 0));
+    unhandledRejectionHandler = handler;
+  }
+
+  static Action1<? super Throwable> getUnhandledRejectionHandler() {
+    return unhandledRejectionHandler;
+  }
+
+  static long getUnhandledRejectionGraceNanos() {
+    return unhandledRejectionGraceNanos;
+  }
+}
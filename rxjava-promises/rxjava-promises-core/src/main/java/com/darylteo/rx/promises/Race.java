@@ -0,0 +1,181 @@
+package com.darylteo.rx.promises;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Settles a promise with the first of several promises to be settled, for
+ * {@link AbstractPromise#_race} and {@link AbstractPromise#_any}.
+ * <p/>
+ * Once there is a winner, the continuations waiting on the losing promises
+ * are detached: they let go of this race (and so of the promise it settles
+ * and anything chained to it), and are unlinked from the losers wherever
+ * that can be done safely.
+ * <p/>
+ * Cancelling the promise it settles detaches from every input the same way,
+ * and cancels those that nothing else is waiting on.
+ */
+final class Race<T> implements Upstream {
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<Race> DECIDED =
+    AtomicIntegerFieldUpdater.newUpdater(Race.class, "decided");
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<Race> REMAINING =
+    AtomicIntegerFieldUpdater.newUpdater(Race.class, "remaining");
+
+  private final AbstractPromise<T> deferred;
+  private final AtomicReferenceArray<Slot<T>> slots;
+
+  // when non-null, only fulfillments win, and these are the reasons of the
+  // inputs that have been rejected so far
+  private final Throwable[] reasons;
+
+  private volatile int decided;
+  private volatile int remaining;
+
+  private Race(AbstractPromise<T> deferred, int count, boolean any) {
+    this.deferred = deferred;
+    this.slots = new AtomicReferenceArray<Slot<T>>(count);
+    this.reasons = any ? new Throwable[count] : null;
+    this.remaining = count;
+  }
+
+  /**
+   * Settles deferred the same way as the first of the promises to be settled.
+   */
+  static <T> void race(AbstractPromise<T> deferred, Iterable<? extends AbstractPromise<? extends T>> promises) {
+    Object[] inputs = toArray(promises);
+    new Race<T>(deferred, inputs.length, false).start(inputs);
+  }
+
+  /**
+   * Fulfills deferred with the value of the first of the promises to be
+   * fulfilled. If all of them are rejected, deferred is rejected with an
+   * {@link AggregateException} of their reasons.
+   */
+  static <T> void any(AbstractPromise<T> deferred, Iterable<? extends AbstractPromise<? extends T>> promises) {
+    Object[] inputs = toArray(promises);
+
+    if (inputs.length == 0) {
+      deferred.reject(new AggregateException(Collections.<Throwable>emptyList()));
+      return;
+    }
+
+    new Race<T>(deferred, inputs.length, true).start(inputs);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void start(Object[] inputs) {
+    this.deferred.waitOn(this);
+
+    for (int i = 0; i < inputs.length; i++) {
+      Slot<T> slot = new Slot<T>(this, (AbstractPromise<T>) inputs[i], i);
+      this.slots.set(i, slot);
+      slot.input.register(slot);
+
+      // an input that was already settled, or settled from another thread in
+      // the meantime, has decided the race. Either the winner saw this slot
+      // and detached it, or it did not and this thread must.
+      if (this.decided != 0) {
+        slot.detach();
+        return;
+      }
+    }
+  }
+
+  private void settle(Slot<T> slot, AbstractPromise<T> input) {
+    if (input.isFulfilled() || this.reasons == null) {
+      if (DECIDED.compareAndSet(this, 0, 1)) {
+        this.detachAll();
+
+        this.deferred.follow(input);
+      }
+
+      return;
+    }
+
+    // any(): count the rejection, and give up once every input is rejected.
+    // The decrement publishes the write to whichever thread gives up.
+    this.reasons[slot.index] = input.getReason();
+
+    if (REMAINING.decrementAndGet(this) == 0 && DECIDED.compareAndSet(this, 0, 1)) {
+      this.detachAll();
+      this.deferred.reject(new AggregateException(Arrays.asList(this.reasons)));
+    }
+  }
+
+  @Override
+  public AbstractPromise<?> cancel() {
+    if (DECIDED.compareAndSet(this, 0, 1)) {
+      this.detachAll();
+
+      for (int i = 0; i < this.slots.length(); i++) {
+        Slot<T> slot = this.slots.get(i);
+
+        if (slot != null) {
+          AbstractPromise.cancelIfUnobserved(slot.input);
+        }
+      }
+    }
+
+    return null;
+  }
+
+  private void detachAll() {
+    for (int i = 0; i < this.slots.length(); i++) {
+      Slot<T> slot = this.slots.get(i);
+
+      if (slot != null) {
+        slot.detach();
+      }
+    }
+  }
+
+  private static Object[] toArray(Iterable<?> promises) {
+    if (promises instanceof Collection) {
+      return ((Collection<?>) promises).toArray();
+    }
+
+    List<Object> list = new ArrayList<Object>();
+    for (Object promise : promises) {
+      list.add(promise);
+    }
+
+    return list.toArray();
+  }
+
+  /* Private Classes */
+  private static final class Slot<T> extends Continuation<T> {
+    private volatile Race<T> race;
+
+    private final AbstractPromise<T> input;
+    private final int index;
+
+    Slot(Race<T> race, AbstractPromise<T> input, int index) {
+      this.race = race;
+      this.input = input;
+      this.index = index;
+    }
+
+    @Override
+    void run(AbstractPromise<T> promise) {
+      Race<T> race = this.race;
+
+      if (race != null) {
+        race.settle(this, promise);
+      }
+    }
+
+    @Override
+    boolean isDetached() {
+      return this.race == null;
+    }
+
+    void detach() {
+      this.race = null;
+      this.input.purge();
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package com.darylteo.rx.promises;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Where a then/fail/fin handler was registered, for debugging rejections
+ * that have passed through a long chain of promises.
+ * <p/>
+ * Off by default. Run with
+ * {@code -Dcom.darylteo.rx.promises.traceRegistrations=N} to record the
+ * registration site of 1 in every N chains (1 records them all). Every
+ * promise further down a recorded chain is recorded as well. When such a
+ * promise is rejected, its registration site is added to the reason as a
+ * suppressed exception, so the printed stack trace of the reason lists
+ * every link it passed through. A reason that is rejected many times over,
+ * such as a shared constant, only keeps the first {@value #MAX_SITES}.
+ * <p/>
+ * Suppressed exceptions were added in Java 7. On Java 6 nothing is recorded.
+ */
+final class RegistrationSite extends Throwable {
+  private static final long serialVersionUID = 1L;
+
+  static final int MAX_SITES = 32;
+
+  // Throwable.addSuppressed and getSuppressed, if this is Java 7 or later
+  private static final Method ADD_SUPPRESSED = method("addSuppressed", Throwable.class);
+  private static final Method GET_SUPPRESSED = method("getSuppressed");
+
+  private static final int SAMPLE = Integer.getInteger("com.darylteo.rx.promises.traceRegistrations", 0);
+
+  static final boolean ENABLED = SAMPLE > 0 && ADD_SUPPRESSED != null && GET_SUPPRESSED != null;
+
+  // only used to pick which chains to sample, so lost updates do not matter
+  private static int count;
+
+  private RegistrationSite(String name) {
+    super("Promise handler registered on " + name);
+  }
+
+  /**
+   * Records the registration site of a handler on the given promise, if that
+   * promise is itself recorded or its chain is picked by sampling.
+   *
+   * @return the site, or null if it is not to be recorded
+   */
+  static RegistrationSite capture(AbstractPromise<?> promise, RegistrationSite previous) {
+    boolean sampled = previous != null || SAMPLE == 1 || (++count & Integer.MAX_VALUE) % SAMPLE == 0;
+
+    if (!sampled) {
+      return null;
+    }
+
+    RegistrationSite site = new RegistrationSite(promise.getClass().getName());
+    site.trim(promise.getClass().getName());
+
+    return site;
+  }
+
+  /**
+   * Adds this site to the reason a promise was rejected with, unless the
+   * reason already has it or already has as many sites as it may keep.
+   */
+  void addTo(Throwable reason) {
+    try {
+      int sites = 0;
+
+      for (Throwable suppressed : (Throwable[]) GET_SUPPRESSED.invoke(reason)) {
+        if (suppressed == this) {
+          return;
+        }
+
+        if (suppressed instanceof RegistrationSite && ++sites >= MAX_SITES) {
+          return;
+        }
+      }
+
+      ADD_SUPPRESSED.invoke(reason, this);
+    } catch (Exception e) {
+      // the reason does not allow it
+    }
+  }
+
+  // removes the frames inside the promise library, so the first frame is
+  // the caller of then/fail/fin
+  private void trim(String className) {
+    StackTraceElement[] trace = this.getStackTrace();
+
+    int start = 0;
+    for (int i = 0; i < trace.length; i++) {
+      if (trace[i].getMethodName().equals("_then")) {
+        start = i + 1;
+        break;
+      }
+    }
+
+    while (start < trace.length && trace[start].getClassName().equals(className)) {
+      start++;
+    }
+
+    this.setStackTrace(Arrays.copyOfRange(trace, start, trace.length));
+  }
+
+  private static Method method(String name, Class<?>... parameterTypes) {
+    try {
+      return Throwable.class.getMethod(name, parameterTypes);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+}
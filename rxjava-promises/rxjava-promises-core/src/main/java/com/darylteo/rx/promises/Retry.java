@@ -0,0 +1,150 @@
+package com.darylteo.rx.promises;
+
+import rx.functions.Func0;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes attempts at an operation until one succeeds or the
+ * {@link RetryPolicy} gives up, for {@link AbstractPromise#_retry}.
+ * <p/>
+ * The same object is the continuation waiting on each attempt and the timer
+ * task that starts the next, so retrying allocates nothing beyond what the
+ * attempts themselves do. Only the current attempt is referenced: earlier
+ * ones, and anything they hold, can be collected as soon as they fail.
+ * <p/>
+ * Cancelling the deferred promise stops the timer, if it is waiting, or
+ * detaches from the current attempt and cancels it if nothing else is
+ * waiting on it.
+ */
+final class Retry<T> extends Continuation<Object> implements Runnable, Upstream {
+  private final AbstractPromise<T> deferred;
+  private final Func0<? extends AbstractPromise<? extends T>> attempt;
+  private final RetryPolicy policy;
+  private final Timer timer;
+
+  // only ever one attempt is under way, and each one happens after the last
+  private int attempts;
+
+  private volatile AbstractPromise<?> current;
+  private volatile Timer.Timeout timeout;
+  private volatile boolean detached;
+
+  private Retry(AbstractPromise<T> deferred, Func0<? extends AbstractPromise<? extends T>> attempt, RetryPolicy policy, Timer timer) {
+    this.deferred = deferred;
+    this.attempt = attempt;
+    this.policy = policy;
+    this.timer = timer;
+  }
+
+  /**
+   * Settles deferred the same way as the first attempt that is fulfilled,
+   * or the last one made.
+   */
+  static <T> void retry(AbstractPromise<T> deferred, Func0<? extends AbstractPromise<? extends T>> attempt, RetryPolicy policy, Timer timer) {
+    Retry<T> retry = new Retry<T>(deferred, attempt, policy, timer);
+
+    deferred.waitOn(retry);
+    retry.run();
+  }
+
+  // makes the next attempt. Attempts that fail without returning a promise
+  // are retried in a loop, rather than recursively
+  @SuppressWarnings("unchecked")
+  @Override
+  public void run() {
+    while (!this.detached) {
+      AbstractPromise<?> input;
+      this.attempts++;
+
+      try {
+        input = this.attempt.call();
+
+        if (input == null) {
+          throw new NullPointerException("retry attempt returned null");
+        }
+      } catch (RuntimeException e) {
+        if (this.retryNow(e)) {
+          continue;
+        }
+
+        return;
+      }
+
+      this.current = input;
+      ((AbstractPromise<Object>) input).register(this);
+      return;
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  void run(AbstractPromise<Object> input) {
+    if (this.detached) {
+      return;
+    }
+
+    this.current = null;
+
+    if (!input.isRejected()) {
+      this.deferred.follow((AbstractPromise<T>) (AbstractPromise<?>) input);
+    } else if (this.retryNow(input.getReason())) {
+      // from inside a continuation, so the attempt's continuation is
+      // trampolined rather than run on this stack
+      this.run();
+    }
+  }
+
+  // Settles deferred if the policy gives up, or schedules the next attempt.
+  // Returns true if the next attempt should be made straight away instead
+  private boolean retryNow(Throwable reason) {
+    long delay;
+
+    try {
+      if (!this.policy.shouldRetry(this.attempts, reason)) {
+        this.deferred.reject(reason);
+        return false;
+      }
+
+      delay = this.policy.delayNanos(this.attempts);
+    } catch (RuntimeException e) {
+      this.deferred.reject(e);
+      return false;
+    }
+
+    if (delay <= 0) {
+      return true;
+    }
+
+    this.timeout = this.timer.schedule(this, delay, TimeUnit.NANOSECONDS);
+
+    // cancelled in the meantime, before the timeout could be seen
+    if (this.detached) {
+      this.timeout.cancel();
+    }
+
+    return false;
+  }
+
+  @Override
+  boolean isDetached() {
+    return this.detached;
+  }
+
+  @Override
+  public AbstractPromise<?> cancel() {
+    this.detached = true;
+
+    Timer.Timeout timeout = this.timeout;
+    if (timeout != null) {
+      timeout.cancel();
+    }
+
+    AbstractPromise<?> current = this.current;
+    if (current != null) {
+      current.purge();
+    }
+
+    return current;
+  }
+}
@@ -0,0 +1,148 @@
+package com.darylteo.rx.promises;
+
+import rx.functions.Func1;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How often, and how soon, a failed operation is retried. Policies are
+ * immutable: each method returns a new policy, so they can be built once and
+ * shared.
+ * <pre>
+ * RetryPolicy policy = RetryPolicy.attempts(5)
+ *   .backoff(100, TimeUnit.MILLISECONDS)
+ *   .maxDelay(5, TimeUnit.SECONDS)
+ *   .jitter(0.5);
+ * </pre>
+ * By default every reason is retried except a {@link CancellationException},
+ * and retries are made straight away.
+ */
+public final class RetryPolicy {
+  private static final Func1<Throwable, Boolean> NOT_CANCELLED = new Func1<Throwable, Boolean>() {
+    @Override
+    public Boolean call(Throwable reason) {
+      return !(reason instanceof CancellationException);
+    }
+  };
+
+  private final int maxAttempts;
+  private final long initialDelayNanos;
+  private final double multiplier;
+  private final long maxDelayNanos;
+  private final double jitter;
+  private final Func1<? super Throwable, Boolean> retryable;
+
+  private RetryPolicy(int maxAttempts, long initialDelayNanos, double multiplier, long maxDelayNanos, double jitter, Func1<? super Throwable, Boolean> retryable) {
+    this.maxAttempts = maxAttempts;
+    this.initialDelayNanos = initialDelayNanos;
+    this.multiplier = multiplier;
+    this.maxDelayNanos = maxDelayNanos;
+    this.jitter = jitter;
+    this.retryable = retryable;
+  }
+
+  /**
+   * @param maxAttempts the most attempts to make, including the first
+   */
+  public static RetryPolicy attempts(int maxAttempts) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be at least 1, was " + maxAttempts);
+    }
+
+    return new RetryPolicy(maxAttempts, 0, 1, Long.MAX_VALUE, 0, NOT_CANCELLED);
+  }
+
+  /**
+   * Waits the given delay before the first retry, doubling it before each
+   * one after that.
+   */
+  public RetryPolicy backoff(long initialDelay, TimeUnit unit) {
+    return this.backoff(initialDelay, unit, 2);
+  }
+
+  /**
+   * Waits the given delay before the first retry, multiplying it by the
+   * given multiplier before each one after that. A multiplier of 1 waits the
+   * same delay every time.
+   */
+  public RetryPolicy backoff(long initialDelay, TimeUnit unit, double multiplier) {
+    if (initialDelay < 0) {
+      throw new IllegalArgumentException("initialDelay must not be negative, was " + initialDelay);
+    }
+    if (multiplier < 1) {
+      throw new IllegalArgumentException("multiplier must be at least 1, was " + multiplier);
+    }
+
+    return new RetryPolicy(this.maxAttempts, unit.toNanos(initialDelay), multiplier, this.maxDelayNanos, this.jitter, this.retryable);
+  }
+
+  /**
+   * Caps the delay between retries, however many there have been.
+   */
+  public RetryPolicy maxDelay(long maxDelay, TimeUnit unit) {
+    if (maxDelay < 0) {
+      throw new IllegalArgumentException("maxDelay must not be negative, was " + maxDelay);
+    }
+
+    return new RetryPolicy(this.maxAttempts, this.initialDelayNanos, this.multiplier, unit.toNanos(maxDelay), this.jitter, this.retryable);
+  }
+
+  /**
+   * Shortens each delay by a random fraction of itself, up to the given
+   * fraction, so that many callers that failed together do not all retry
+   * together. 0 turns this off, and 1 picks any delay from zero to the
+   * full delay.
+   */
+  public RetryPolicy jitter(double jitter) {
+    if (jitter < 0 || jitter > 1) {
+      throw new IllegalArgumentException("jitter must be between 0 and 1, was " + jitter);
+    }
+
+    return new RetryPolicy(this.maxAttempts, this.initialDelayNanos, this.multiplier, this.maxDelayNanos, jitter, this.retryable);
+  }
+
+  /**
+   * Only retries reasons that the given predicate returns true for. Any
+   * other reason fails straight away.
+   */
+  public RetryPolicy retryOn(Func1<? super Throwable, Boolean> retryable) {
+    if (retryable == null) {
+      throw new NullPointerException("retryable");
+    }
+
+    return new RetryPolicy(this.maxAttempts, this.initialDelayNanos, this.multiplier, this.maxDelayNanos, this.jitter, retryable);
+  }
+
+  public int getMaxAttempts() {
+    return this.maxAttempts;
+  }
+
+  /**
+   * @param attempts the number of attempts made so far
+   * @param reason   the reason the last of them failed
+   * @return whether to make another
+   */
+  boolean shouldRetry(int attempts, Throwable reason) {
+    return attempts < this.maxAttempts && Boolean.TRUE.equals(this.retryable.call(reason));
+  }
+
+  /**
+   * @param attempts the number of attempts made so far, at least 1
+   * @return how long to wait before the next attempt, in nanoseconds
+   */
+  long delayNanos(int attempts) {
+    if (this.initialDelayNanos == 0) {
+      return 0;
+    }
+
+    double delay = this.initialDelayNanos * Math.pow(this.multiplier, attempts - 1);
+    delay = Math.min(delay, this.maxDelayNanos);
+
+    if (this.jitter > 0) {
+      delay -= delay * this.jitter * Math.random();
+    }
+
+    return (long) delay;
+  }
+}
@@ -0,0 +1,33 @@
+package com.darylteo.rx.promises;
+
+import rx.Scheduler;
+import rx.functions.Action0;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks on an RxJava {@link Scheduler}, each on a worker of its own.
+ */
+final class SchedulerExecutor implements Executor {
+  private final Scheduler scheduler;
+
+  SchedulerExecutor(Scheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  @Override
+  public void execute(final Runnable task) {
+    final Scheduler.Worker worker = scheduler.createWorker();
+
+    worker.schedule(new Action0() {
+      @Override
+      public void call() {
+        try {
+          task.run();
+        } finally {
+          worker.unsubscribe();
+        }
+      }
+    });
+  }
+}
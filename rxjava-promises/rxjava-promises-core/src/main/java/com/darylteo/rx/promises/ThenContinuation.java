@@ -0,0 +1,280 @@
+package com.darylteo.rx.promises;
+
+import rx.functions.*;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The continuation created by {@link AbstractPromise#_then}. It evaluates the
+ * handlers of a single then/fail/fin call and resolves the next promise in
+ * the chain with the result.
+ * <p/>
+ * The handlers are classified once, when the continuation is created, so
+ * an unsupported handler type fails at registration rather than at
+ * settlement, and invoking a handler is a switch instead of a chain of
+ * instanceof tests.
+ * <p/>
+ * If an executor is given, the handlers are run by it rather than by the
+ * thread settling the promise. The continuation is itself the task handed
+ * to the executor, so this costs no extra allocation.
+ * <p/>
+ * If the next promise is cancelled, the continuation detaches from the
+ * promise it is registered on and none of its handlers are run. If instead
+ * that promise is cancelled, the next one is cancelled with it.
+ */
+final class ThenContinuation<T, O> extends Continuation<T> implements Runnable, Upstream {
+  /* Handler Kinds */
+  static final int NONE = 0;
+  static final int ACTION0 = 1;
+  static final int ACTION1 = 2;
+  static final int FUNC0 = 3;
+  static final int FUNC1 = 4;
+
+  private final AbstractPromise<T> source;
+  private final AbstractPromise<O> deferred;
+
+  private final Function onFulfilled;
+  private final Function onRejected;
+  private final Function onFinally;
+
+  private final int onFulfilledKind;
+  private final int onRejectedKind;
+  private final int onFinallyKind;
+
+  private final Executor executor;
+
+  private volatile boolean detached;
+
+  ThenContinuation(AbstractPromise<T> source, AbstractPromise<O> deferred, Function onFulfilled, Function onRejected, Function onFinally, Executor executor) {
+    this.source = source;
+    this.deferred = deferred;
+    this.executor = executor;
+
+    this.onFulfilled = onFulfilled;
+    this.onRejected = onRejected;
+    this.onFinally = onFinally;
+
+    this.onFulfilledKind = classify(onFulfilled);
+    this.onRejectedKind = classify(onRejected);
+    this.onFinallyKind = classifyFinally(onFinally);
+  }
+
+  @Override
+  void run(AbstractPromise<T> that) {
+    if (detached) {
+      return;
+    }
+
+    if (that.isCancelled()) {
+      deferred.cancel();
+      return;
+    }
+
+    if (executor == null) {
+      evaluate(that);
+      return;
+    }
+
+    try {
+      executor.execute(this);
+    } catch (Throwable e) {
+      // the executor would not take the task (e.g. it has been shut down)
+      deferred.reject(e);
+    }
+  }
+
+  @Override
+  public void run() {
+    // the next promise may have been cancelled while this was queued
+    if (!detached) {
+      evaluate(source);
+    }
+  }
+
+  @Override
+  boolean isDetached() {
+    return detached;
+  }
+
+  @Override
+  public AbstractPromise<?> cancel() {
+    detached = true;
+    source.purge();
+
+    return source;
+  }
+
+  private void evaluate(AbstractPromise<T> that) {
+    try {
+      // onfinally and onFulfilled/onRejected are mutually exclusive
+      // note: this implementation of finally is closer to "onComplete" rather than "finallyDo"
+      // in that it fires immediately when the previous Promise is fulfilled, rather than
+      // for the entire sequence of Observables to complete its sequence.
+      if (onFinallyKind != NONE) {
+        evaluateFinally(that);
+        return;
+      }
+
+      // No finally block was provided, thus we need to evaluate fulfillment
+      // or rejection.
+      // If the appropriate handler is not provided, it is forwarded to the
+      // next promise
+      if (that.isFulfilled()) {
+        evaluateFulfilled(that);
+      } else {
+        evaluateRejected(that);
+      }
+    } catch (Throwable e) {
+      // On any exception in the handlers above, we should throw the
+      // exception to the next promise
+      deferred.reject(e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void evaluateFinally(final AbstractPromise<T> that) {
+    Object result = call(onFinallyKind, onFinally, null);
+
+    // a finally block returning anything other than a promise is treated as
+    // returning nothing, as dynamic languages return their last expression
+    if (result instanceof AbstractPromise) {
+      // the finally block returned a promise, so we need to delay
+      // fulfillment of the next promise until the returned promise is
+      // fulfilled
+      ((AbstractPromise<Object>) result).register(new Continuation<Object>() {
+        @Override
+        void run(AbstractPromise<Object> result) {
+          if (result.isFulfilled()) {
+            deferred.fulfill((O) that.getValue());
+          } else {
+            deferred.reject(result.getReason());
+          }
+        }
+      });
+    } else {
+      // nothing was returned by the finally block. We can go ahead and
+      // forward the value/reason held by this promise on to the next
+      // one for resolution
+      if (that.isFulfilled()) {
+        deferred.fulfill((O) that.getValue());
+      } else {
+        deferred.reject(that.getReason());
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void evaluateFulfilled(AbstractPromise<T> that) {
+    if (onFulfilledKind != NONE) {
+      evalResult(call(onFulfilledKind, onFulfilled, that.getValue()));
+    } else {
+      // Sends the value forward. We assume that the casting will pass
+      deferred.fulfill((O) that.getValue());
+    }
+  }
+
+  private void evaluateRejected(AbstractPromise<T> that) {
+    if (onRejectedKind != NONE) {
+      // Allow this handler to recover from the rejection
+      evalResult(call(onRejectedKind, onRejected, that.getReason()));
+    } else {
+      // Forward it to the next promise
+      deferred.reject(that.getReason());
+    }
+  }
+
+  // takes a result and either converts it to a promise or sends it forward
+  // for fulfillment
+  @SuppressWarnings("unchecked")
+  private void evalResult(Object result) {
+    if (result instanceof AbstractPromise) {
+      deferred.become((AbstractPromise<O>) result);
+    } else {
+      deferred.fulfill((O) result);
+    }
+  }
+
+  /* Handler Dispatch */
+  // invokes a handler, timing it if metrics are enabled
+  private static Object call(int kind, Function function, Object value) {
+    if (!Metrics.ENABLED) {
+      return invoke(kind, function, value);
+    }
+
+    long start = System.nanoTime();
+    try {
+      Object result = invoke(kind, function, value);
+      Metrics.INSTANCE.handlerRun(function, System.nanoTime() - start, null);
+
+      return result;
+    } catch (Throwable e) {
+      // including checked exceptions, which other JVM languages can throw
+      Metrics.INSTANCE.handlerRun(function, System.nanoTime() - start, e);
+      throw ThenContinuation.<RuntimeException>rethrow(e);
+    }
+  }
+
+  // throws any throwable unchanged, checked or not. Returns nothing, but
+  // declared to return an exception so that callers can throw it, for the
+  // compiler's sake
+  @SuppressWarnings("unchecked")
+  private static <E extends Throwable> E rethrow(Throwable e) throws E {
+    throw (E) e;
+  }
+
+  @SuppressWarnings("unchecked")
+  static Object invoke(int kind, Function function, Object value) {
+    switch (kind) {
+      case ACTION0:
+        ((Action0) function).call();
+        return null;
+      case ACTION1:
+        ((Action1<Object>) function).call(value);
+        return null;
+      case FUNC0:
+        return ((Func0<?>) function).call();
+      default:
+        return ((Func1<Object, ?>) function).call(value);
+    }
+  }
+
+  static int classify(Function function) throws IllegalArgumentException {
+    if (function == null) {
+      return NONE;
+    }
+
+    if (function instanceof Action0) {
+      return ACTION0;
+    }
+
+    if (function instanceof Action1<?>) {
+      return ACTION1;
+    }
+
+    if (function instanceof Func0<?>) {
+      return FUNC0;
+    }
+
+    if (function instanceof Func1<?, ?>) {
+      return FUNC1;
+    }
+
+    throw new IllegalArgumentException("Could not correctly invoke callback function with type " + function.getClass().toString());
+  }
+
+  static int classifyFinally(Function function) throws IllegalArgumentException {
+    if (function == null) {
+      return NONE;
+    }
+
+    if (function instanceof Func0<?>) {
+      return FUNC0;
+    }
+
+    if (function instanceof Action0) {
+      return ACTION0;
+    }
+
+    throw new IllegalArgumentException("Could not correctly invoke finally function with type " + function.getClass().toString());
+  }
+}
@@ -0,0 +1,89 @@
+package com.darylteo.rx.promises;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Settles a promise the same way as another, unless a timer runs out first,
+ * for {@link AbstractPromise#_timeout}.
+ * <p/>
+ * The same object is both the continuation waiting on the source promise and
+ * the task waiting on the timer. Whichever runs first cancels the other: the
+ * timer task is removed from the timer, or the continuation is detached from
+ * the source promise. Cancelling the deferred promise does both.
+ */
+final class TimeoutContinuation<T> extends Continuation<T> implements Runnable, Upstream {
+  private final AbstractPromise<T> source;
+  private final AbstractPromise<T> deferred;
+
+  private final long delay;
+  private final TimeUnit unit;
+
+  private volatile Timer.Timeout timeout;
+  private volatile boolean detached;
+
+  TimeoutContinuation(AbstractPromise<T> source, AbstractPromise<T> deferred, long delay, TimeUnit unit) {
+    this.source = source;
+    this.deferred = deferred;
+    this.delay = delay;
+    this.unit = unit;
+  }
+
+  void start(Timer timer) {
+    this.deferred.waitOn(this);
+    this.timeout = timer.schedule(this, this.delay, this.unit);
+    this.source.register(this);
+
+    // with a short enough delay, the timer may have run out already
+    if (this.detached) {
+      this.source.purge();
+    }
+  }
+
+  /* source settled */
+  @Override
+  void run(AbstractPromise<T> promise) {
+    if (this.detached) {
+      return;
+    }
+
+    this.cancelTimeout();
+    this.deferred.follow(promise);
+  }
+
+  @Override
+  boolean isDetached() {
+    return this.detached;
+  }
+
+  /* deferred cancelled */
+  @Override
+  public AbstractPromise<?> cancel() {
+    this.detached = true;
+    this.cancelTimeout();
+    this.source.purge();
+
+    return this.source;
+  }
+
+  /* timer expired */
+  @Override
+  public void run() {
+    if (this.detached) {
+      return;
+    }
+
+    this.detached = true;
+    this.source.purge();
+
+    this.deferred.reject(new TimeoutException("Promise was not settled within " + this.delay + " " + this.unit.toString().toLowerCase()));
+  }
+
+  private void cancelTimeout() {
+    Timer.Timeout timeout = this.timeout;
+
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.darylteo.rx.promises;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Something that can run a task after a delay, used for promise timeouts and
+ * delays. {@link HashedWheelTimer#shared()} is used unless a platform (e.g.
+ * Vert.x) provides its own.
+ */
+public interface Timer {
+  /**
+   * Runs task once, after the given delay.
+   *
+   * @return a handle that can be used to cancel the task before it runs
+   */
+  Timeout schedule(Runnable task, long delay, TimeUnit unit);
+
+  public interface Timeout {
+    /**
+     * Stops the task from running, if it has not already.
+     *
+     * @return true if the task will no longer run
+     */
+    boolean cancel();
+  }
+}
@@ -0,0 +1,114 @@
+package com.darylteo.rx.promises;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Runs the continuations of settled promises iteratively.
+ * <p/>
+ * Settling a promise runs its continuations, which settle the next promises
+ * in their chains, which run their continuations, and so on. Done directly,
+ * the stack grows with the length of the chain. Instead, a promise settled
+ * while a continuation is already running on the same thread is queued, and
+ * the outermost settle call drains the queue. Stack depth then stays constant
+ * however long the chain is.
+ */
+final class Trampoline {
+  private static final ThreadLocal<Trampoline> CURRENT = new ThreadLocal<Trampoline>() {
+    @Override
+    protected Trampoline initialValue() {
+      return new Trampoline();
+    }
+  };
+
+  // pairs of (settled promise, its first continuation)
+  private final ArrayDeque<Object> queue = new ArrayDeque<Object>();
+  private boolean draining;
+
+  private Trampoline() {
+  }
+
+  /**
+   * Runs the given continuations (linked through Continuation.next, in the
+   * order they should run) against their settled promise. If this thread is
+   * already running continuations they are queued instead, and run before
+   * the outermost call returns.
+   */
+  static <T> void run(AbstractPromise<T> promise, Continuation<T> head) {
+    if (head == null) {
+      return;
+    }
+
+    Trampoline trampoline = CURRENT.get();
+
+    if (trampoline.draining) {
+      trampoline.queue.add(promise);
+      trampoline.queue.add(head);
+      return;
+    }
+
+    trampoline.drain(promise, head);
+  }
+
+  /**
+   * Runs a number of (settled promise, first continuation) pairs, in order,
+   * as {@link #run} would run each one.
+   */
+  static void runAll(List<Object> pairs) {
+    if (pairs.isEmpty()) {
+      return;
+    }
+
+    Trampoline trampoline = CURRENT.get();
+
+    if (trampoline.draining) {
+      trampoline.queue.addAll(pairs);
+      return;
+    }
+
+    trampoline.queue.addAll(pairs.subList(2, pairs.size()));
+    trampoline.drain((AbstractPromise<?>) pairs.get(0), (Continuation<?>) pairs.get(1));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void drain(AbstractPromise<?> promise, Continuation<?> head) {
+    Throwable error = null;
+    this.draining = true;
+
+    try {
+      for (; ; ) {
+        while (head != null) {
+          Continuation<Object> continuation = (Continuation<Object>) head;
+          head = head.next;
+          continuation.next = null;
+
+          try {
+            continuation.run((AbstractPromise<Object>) promise);
+          } catch (Throwable e) {
+            // keep going, so that one failing continuation does not strand the others
+            if (error == null) {
+              error = e;
+            }
+          }
+        }
+
+        if (queue.isEmpty()) {
+          break;
+        }
+
+        promise = (AbstractPromise<?>) queue.poll();
+        head = (Continuation<?>) queue.poll();
+      }
+    } finally {
+      this.draining = false;
+    }
+
+    if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    }
+
+    if (error instanceof Error) {
+      throw (Error) error;
+    }
+  }
+}
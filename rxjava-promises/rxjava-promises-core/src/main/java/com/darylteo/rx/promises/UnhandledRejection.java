@@ -0,0 +1,128 @@
+package com.darylteo.rx.promises;
+
+import rx.functions.Action1;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks a rejected promise that nothing has been chained from yet, for
+ * {@link Promises#setUnhandledRejectionHandler}.
+ * <p/>
+ * It only holds a phantom reference to the promise, so it does not keep the
+ * promise alive. If the promise is collected while still unhandled, a
+ * daemon thread reports its reason. If a grace period is set, the shared
+ * timer reports it once that has passed instead. Chaining from the promise
+ * stops the tracking.
+ */
+final class UnhandledRejection extends PhantomReference<AbstractPromise<?>> implements Runnable {
+  private static final ReferenceQueue<AbstractPromise<?>> QUEUE = new ReferenceQueue<AbstractPromise<?>>();
+
+  // the trackers themselves must be reachable for the queue to see them.
+  // Removal from this set also decides which of handled and reported wins.
+  private static final Set<UnhandledRejection> TRACKED =
+    Collections.newSetFromMap(new ConcurrentHashMap<UnhandledRejection, Boolean>());
+
+  private static final AtomicBoolean STARTED = new AtomicBoolean();
+
+  private final Throwable reason;
+  private volatile Timer.Timeout timeout;
+
+  private UnhandledRejection(AbstractPromise<?> promise, Throwable reason) {
+    super(promise, QUEUE);
+    this.reason = reason;
+  }
+
+  /**
+   * @return a tracker for the rejected promise, or null if no handler is set
+   */
+  static UnhandledRejection track(AbstractPromise<?> promise, Throwable reason) {
+    if (Promises.getUnhandledRejectionHandler() == null) {
+      return null;
+    }
+
+    UnhandledRejection tracker = new UnhandledRejection(promise, reason);
+    TRACKED.add(tracker);
+
+    if (STARTED.compareAndSet(false, true)) {
+      startWatcher();
+    }
+
+    long grace = Promises.getUnhandledRejectionGraceNanos();
+    if (grace > 0) {
+      tracker.timeout = HashedWheelTimer.shared().schedule(tracker, grace, TimeUnit.NANOSECONDS);
+    }
+
+    return tracker;
+  }
+
+  /**
+   * Something has been chained from the promise.
+   */
+  void handled() {
+    if (TRACKED.remove(this)) {
+      this.stop();
+    }
+  }
+
+  /* grace period over */
+  @Override
+  public void run() {
+    this.report();
+  }
+
+  private void report() {
+    if (!TRACKED.remove(this)) {
+      return;
+    }
+
+    this.stop();
+
+    Action1<? super Throwable> handler = Promises.getUnhandledRejectionHandler();
+    if (handler == null) {
+      return;
+    }
+
+    try {
+      handler.call(this.reason);
+    } catch (Throwable e) {
+      // a failing handler must not stop the others from being reported
+      Thread thread = Thread.currentThread();
+      thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+  }
+
+  private void stop() {
+    this.clear();
+
+    Timer.Timeout timeout = this.timeout;
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
+
+  private static void startWatcher() {
+    Thread watcher = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (; ; ) {
+          try {
+            Reference<?> reference = QUEUE.remove();
+            ((UnhandledRejection) reference).report();
+          } catch (InterruptedException e) {
+            // keep watching; this thread lives as long as the JVM
+          }
+        }
+      }
+    }, "promise-rejection-watcher");
+
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+}
@@ -0,0 +1,20 @@
+package com.darylteo.rx.promises;
+
+/**
+ * Whatever a pending promise is waiting on to be settled: the continuation
+ * registered on the promise before it in a chain, or the subscription to its
+ * source Observable. Cancelling the promise cancels this too.
+ * <p/>
+ * Cancellation travels up a chain one link at a time, through
+ * {@link AbstractPromise#cancelIfUnobserved}, so it uses constant stack
+ * however long the chain is.
+ */
+interface Upstream {
+  /**
+   * Stops settling the promise waiting on this.
+   *
+   * @return the promise that this was waiting on in turn, to be cancelled if
+   * nothing else is waiting on it, or null if there is none
+   */
+  AbstractPromise<?> cancel();
+}
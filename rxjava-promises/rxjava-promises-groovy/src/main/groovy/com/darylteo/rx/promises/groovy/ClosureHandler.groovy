@@ -0,0 +1,63 @@
+package com.darylteo.rx.promises.groovy
+
+import com.darylteo.rx.promises.HandlerAdapter
+import groovy.transform.CompileStatic
+import groovy.transform.PackageScope
+import rx.functions.Func0
+import rx.functions.Func1
+
+/**
+ * Adapts a closure to the handler types understood by the promise core.
+ * The closure is called directly, rather than through a proxy made by
+ * coercing it with {@code as}, which costs a proxy class lookup on every
+ * registration and reflection on every call.
+ * <p/>
+ * Handlers for then and fail are called with the value or reason. Handlers
+ * for fin are called with nothing, and may return a promise to wait on.
+ * Either way, metrics see the class of the closure rather than this one.
+ */
+@CompileStatic
+@PackageScope
+class ClosureHandler implements Func1<Object, Object>, HandlerAdapter {
+  private final Closure closure
+
+  private ClosureHandler(Closure closure) {
+    this.closure = closure
+  }
+
+  static Func1<Object, Object> handler(Closure closure) {
+    return closure == null ? null : new ClosureHandler(closure)
+  }
+
+  static Func0<Object> finallyHandler(Closure closure) {
+    return closure == null ? null : new FinallyHandler(closure)
+  }
+
+  @Override
+  Object call(Object value) {
+    return this.closure.call(value)
+  }
+
+  @Override
+  Class<?> getHandlerClass() {
+    return this.closure.getClass()
+  }
+
+  private static final class FinallyHandler implements Func0<Object>, HandlerAdapter {
+    private final Closure closure
+
+    FinallyHandler(Closure closure) {
+      this.closure = closure
+    }
+
+    @Override
+    Object call() {
+      return this.closure.call()
+    }
+
+    @Override
+    Class<?> getHandlerClass() {
+      return this.closure.getClass()
+    }
+  }
+}
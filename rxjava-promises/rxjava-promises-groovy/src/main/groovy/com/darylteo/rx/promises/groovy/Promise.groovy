@@ -1,9 +1,19 @@
 package com.darylteo.rx.promises.groovy
 
 import com.darylteo.rx.promises.AbstractPromise
-import rx.functions.Action0
-import rx.functions.Func1
+import groovy.transform.CompileStatic
 
+/**
+ * A promise taking closures as handlers.
+ * <p/>
+ * It is statically compiled, so scripts that are statically compiled too
+ * get direct calls to then/fail/fin. Give closure parameters a type when
+ * compiling statically, e.g. {@code then { String value -> ... }}.
+ * <p/>
+ * This is also the implementation behind the Vert.x Groovy promise, which
+ * only adds the Vert.x specifics and narrows the return types.
+ */
+@CompileStatic
 public class Promise<T> extends AbstractPromise<T> {
   public Promise() {
     super();
@@ -13,8 +23,31 @@ public class Promise<T> extends AbstractPromise<T> {
     super(source);
   }
 
+  // resolved(null) is common enough to share one instance
+  private static final Promise NULL = (Promise) _resolved(new Promise<Object>(), (Object) null)
+
+  public static <T> Promise<T> resolved(T value) {
+    if (value == null) {
+      return (Promise<T>) NULL
+    }
+
+    return (Promise<T>) _resolved(new Promise<T>(), value)
+  }
+
+  public static <T> Promise<T> rejected(Object reason) {
+    return (Promise<T>) _rejected(new Promise<T>(), reason)
+  }
+
+  public static <T> Promise<List<T>> all(Iterable<? extends Promise<T>> promises) {
+    return (Promise<List<T>>) _all(new Promise<List<T>>(), promises)
+  }
+
+  public static <T> Promise<List<Promise<T>>> allSettled(Iterable<? extends Promise<T>> promises) {
+    return (Promise<List<Promise<T>>>) _allSettled(new Promise<List<Promise<T>>>(), promises)
+  }
+
   public <O> Promise<O> then(Map m = [:]) {
-    return this.promise(m.onFulfilled, m.onRejected, null)
+    return this.promise((Closure) m.get('onFulfilled'), (Closure) m.get('onRejected'), null)
   }
 
   public <O> Promise<O> then(Closure<O> onFulfilled, Closure<O> onRejected = null) {
@@ -29,7 +62,15 @@ public class Promise<T> extends AbstractPromise<T> {
     return this.promise(null, null, onFinally);
   }
 
-  private <O> Promise<O> promise(Closure<O> onFulfilled, Closure<O> onRejected, Closure<O> onFinally) {
-    return (Promise<O>) super._then(onFulfilled as Func1<T, O>, onRejected as Func1<T, O>, onFinally as Action0<?>)
+  @Override
+  protected <O> Promise<O> newDeferred() {
+    return new Promise<O>();
+  }
+
+  protected <O> Promise<O> promise(Closure onFulfilled, Closure onRejected, Closure onFinally) {
+    return (Promise<O>) super.<O> _then(
+      ClosureHandler.handler(onFulfilled),
+      ClosureHandler.handler(onRejected),
+      ClosureHandler.finallyHandler(onFinally))
   }
-}
\ No newline at end of file
+}
@@ -1,6 +1,9 @@
 package com.darylteo.rx.promises.groovy.tests
 
+import com.darylteo.rx.promises.HandlerAdapter
+import com.darylteo.rx.promises.groovy.ClosureHandler
 import com.darylteo.rx.promises.groovy.Promise
+import groovy.transform.CompileStatic
 import org.junit.Test
 
 import java.util.concurrent.CountDownLatch
@@ -115,6 +118,80 @@ class PromisesTestGroovy {
     assertEquals 0, latch.count
   }
 
+  @Test
+  public void testFinallyResult() {
+    def result = []
+    def inner = new Promise()
+
+    /* a promise returned by fin is waited on, and anything else is ignored */
+    Promise.resolved('Hello').fin { inner }.then { value -> result << value }
+    assertTrue result.empty
+    inner.fulfill('World')
+    assertEquals(['Hello'], result)
+
+    Promise.resolved('Hello').fin { 'Foo' }.then { value -> result << value }
+    assertEquals(['Hello', 'Hello'], result)
+  }
+
+  @Test
+  public void testAll() {
+    CountDownLatch latch = new CountDownLatch(2)
+
+    Promise.all([makePromise('Hello'), makePromise('World')]).then { result ->
+      assertEquals(['Hello', 'World'], result)
+      latch.countDown()
+    }
+    Promise.allSettled([makePromise('Hello'), makeRejection('World')]).then { result ->
+      assertTrue result[0].fulfilled
+      assertTrue result[1].rejected
+      latch.countDown()
+    }
+
+    latch.await(2l, TimeUnit.SECONDS);
+    assertEquals 0, latch.count
+  }
+
+  @Test
+  public void testSettled() {
+    def result = []
+
+    Promise.resolved('Hello').then { value -> result << value }
+    Promise.rejected('World').fail { reason -> result << reason.message }
+
+    assertEquals(['Hello', 'World'], result)
+    assertSame Promise.resolved(null), Promise.resolved(null)
+  }
+
+  @Test
+  @CompileStatic
+  public void testStaticallyCompiled() {
+    List<Object> result = []
+
+    Promise<String> promise = Promise.resolved('Hello')
+    promise.then { String value ->
+      value.toUpperCase()
+    }.then { Object value ->
+      result << value
+      Promise.rejected('Foo')
+    }.fail { Exception reason ->
+      result << reason.message
+    }.fin {
+      result << 'Bar'
+    }
+
+    assertEquals(['HELLO', 'Foo', 'Bar'], result)
+  }
+
+  /* Metrics group closure handlers by the closure, not by their adapter */
+  @Test
+  public void testHandlerClass() {
+    Closure onFulfilled = { value -> value }
+    Closure onFinally = { -> }
+
+    assertEquals(onFulfilled.getClass(), (ClosureHandler.handler(onFulfilled) as HandlerAdapter).handlerClass)
+    assertEquals(onFinally.getClass(), (ClosureHandler.finallyHandler(onFinally) as HandlerAdapter).handlerClass)
+    assertNotEquals(onFulfilled.getClass(), onFinally.getClass())
+  }
 
   private Promise<String> makePromise(String message) {
     Promise<String> p = new Promise()
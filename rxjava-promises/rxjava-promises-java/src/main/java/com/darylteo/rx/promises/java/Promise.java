@@ -1,10 +1,17 @@
 package com.darylteo.rx.promises.java;
 
 import com.darylteo.rx.promises.AbstractPromise;
+import com.darylteo.rx.promises.HashedWheelTimer;
+import com.darylteo.rx.promises.RetryPolicy;
 import com.darylteo.rx.promises.java.functions.*;
 import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func0;
 import rx.functions.Function;
-import rx.subjects.ReplaySubject;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A Promise represents a request that will be fulfilled sometime in the future, most usually by an asynchrous task executed on the Vert.x Event Loop. It allows you to assign handlers to deal with the return results of asynchronus tasks, and to flatten "pyramids of doom" or "callback hell".
@@ -43,6 +50,133 @@ public class Promise<T> extends AbstractPromise<T> {
     super(source);
   }
 
+  /* ================== */
+  /* Settled Promises */
+
+  // resolved(null) is common enough (Promise<Void>) to share one instance
+  private static final Promise<Object> NULL = (Promise<Object>) _resolved(new Promise<Object>(), null);
+
+  /**
+   * Returns a promise that is already fulfilled with the given value.
+   * Handlers chained from it are run as soon as they are registered.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<T> resolved(T value) {
+    if (value == null) {
+      return (Promise<T>) NULL;
+    }
+
+    return (Promise<T>) _resolved(new Promise<T>(), value);
+  }
+
+  /**
+   * Returns a promise that is already rejected with the given reason.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<T> rejected(Throwable reason) {
+    return (Promise<T>) _rejected(new Promise<T>(), reason);
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<T> rejected(Object reason) {
+    return (Promise<T>) _rejected(new Promise<T>(), reason);
+  }
+
+  /* ================== */
+  /* Combinators */
+
+  /**
+   * Returns a promise for the values of all the given promises, in iteration
+   * order. It is rejected as soon as any of them is rejected.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<List<T>> all(Iterable<? extends Promise<? extends T>> promises) {
+    return (Promise<List<T>>) _all(new Promise<List<T>>(), promises);
+  }
+
+  /**
+   * Returns a promise for the given promises themselves, in iteration order,
+   * that is fulfilled once every one of them is either fulfilled or rejected.
+   * Inspect each with getState(), getValue() and getReason().
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<List<Promise<T>>> allSettled(Iterable<? extends Promise<T>> promises) {
+    return (Promise<List<Promise<T>>>) _allSettled(new Promise<List<Promise<T>>>(), promises);
+  }
+
+  /**
+   * Returns a promise that is fulfilled or rejected the same way as whichever
+   * of the given promises is settled first. Once that happens, the returned
+   * promise stops listening to the others.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<T> race(Iterable<? extends Promise<? extends T>> promises) {
+    return (Promise<T>) _race(new Promise<T>(), promises);
+  }
+
+  /**
+   * Returns a promise for the value of whichever of the given promises is
+   * fulfilled first. Once that happens, the returned promise stops listening
+   * to the others. If every one of them is rejected, it is rejected with an
+   * {@link com.darylteo.rx.promises.AggregateException} of all the reasons.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<T> any(Iterable<? extends Promise<? extends T>> promises) {
+    return (Promise<T>) _any(new Promise<T>(), promises);
+  }
+
+  /**
+   * Returns a promise for the values of the promises returned by the function
+   * for each item, in iteration order. At most maxInFlight of those promises
+   * are pending at once: each item is only taken from the iterable once an
+   * earlier promise is fulfilled. If any of them is rejected, the returned
+   * promise is rejected with the same reason, no more items are taken, and
+   * the ones still pending are cancelled.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T, R> Promise<List<R>> mapConcurrent(Iterable<? extends T> items, int maxInFlight, RepromiseFunction<T, R> function) {
+    return (Promise<List<R>>) _mapConcurrent(new Promise<List<R>>(), items, maxInFlight, function);
+  }
+
+  /**
+   * As {@link #mapConcurrent}, but each value is emitted as soon as its
+   * promise is fulfilled, so values arrive in the order they are ready
+   * rather than the order of the items. Each subscription maps the items
+   * afresh. Unsubscribing stops taking items and cancels the pending promises.
+   */
+  public static <T, R> Observable<R> streamConcurrent(Iterable<? extends T> items, int maxInFlight, RepromiseFunction<T, R> function) {
+    return _streamConcurrent(items, maxInFlight, function);
+  }
+
+  /* ================== */
+  /* Timers */
+
+  /**
+   * Returns a promise that is fulfilled with null after the given delay.
+   */
+  public static Promise<Void> delay(long delay, TimeUnit unit) {
+    return delay(null, delay, unit);
+  }
+
+  /**
+   * Returns a promise that is fulfilled with the given value after the given delay.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<T> delay(T value, long delay, TimeUnit unit) {
+    return (Promise<T>) _delay(new Promise<T>(), value, delay, unit, HashedWheelTimer.shared());
+  }
+
+  /**
+   * Returns a promise for the first promise returned by attempt that is
+   * fulfilled. Whenever one is rejected, attempt is called again, as often
+   * and as soon as the policy allows. Delays between attempts wait on the
+   * shared {@link HashedWheelTimer} rather than blocking a thread.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<T> retry(Func0<Promise<T>> attempt, RetryPolicy policy) {
+    return (Promise<T>) _retry(new Promise<T>(), attempt, policy, HashedWheelTimer.shared());
+  }
+
   /* ================== */
   /* Strictly Typed Defer Methods */
   // then(onFulfilled)
@@ -116,6 +250,53 @@ public class Promise<T> extends AbstractPromise<T> {
     return this.promise(null, null, onFinally);
   }
 
+  /* ================== */
+  /* Timeout Methods */
+
+  /**
+   * Returns a promise for the same result as this one, that is instead
+   * rejected with a {@link java.util.concurrent.TimeoutException} if this one
+   * is still pending after the given delay.
+   * <p/>
+   * Timeouts share a single {@link HashedWheelTimer}, and are removed from it
+   * as soon as this promise is settled.
+   */
+  public Promise<T> timeout(long delay, TimeUnit unit) {
+    return (Promise<T>) super._timeout(delay, unit, HashedWheelTimer.shared());
+  }
+
+  /* ================== */
+  /* Scheduling Methods */
+
+  /**
+   * Returns a promise for the same result as this one, whose then/fail/fin
+   * handlers are run by the given executor rather than by the thread that
+   * fulfills or rejects it. Handlers are otherwise run synchronously.
+   * <p/>
+   * Only handlers registered on the returned promise are affected:
+   * <pre>
+   * promise.on(pool).then(runsOnPool).then(runsWhereverThePreviousPromiseIsFulfilled);
+   * </pre>
+   */
+  public Promise<T> on(Executor executor) {
+    return (Promise<T>) super._on(executor);
+  }
+
+  /**
+   * Returns a promise for the same result as this one, whose then/fail/fin
+   * handlers are run on the given scheduler.
+   *
+   * @see #on(java.util.concurrent.Executor)
+   */
+  public Promise<T> on(Scheduler scheduler) {
+    return (Promise<T>) super._on(scheduler);
+  }
+
+  @Override
+  protected <O> Promise<O> newDeferred() {
+    return new Promise<O>();
+  }
+
   @SuppressWarnings("unchecked")
   protected <O> Promise<O> promise(Function onFulfilled, Function onRejected, Function onFinally) {
     return (Promise<O>) super._then(onFulfilled, onRejected, onFinally);
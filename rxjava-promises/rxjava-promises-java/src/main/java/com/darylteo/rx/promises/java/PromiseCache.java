@@ -0,0 +1,261 @@
+package com.darylteo.rx.promises.java;
+
+import rx.Observer;
+import rx.functions.Func1;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the promises returned by a loader between callers asking for the
+ * same key.
+ * <p/>
+ * While a load is in flight, every caller for its key is given the same
+ * promise, so the loader runs once however many callers there are. Once it
+ * is fulfilled, that promise is handed out until it is older than the time
+ * to live. A rejected or cancelled load is dropped straight away, so the next
+ * caller loads it again. When the cache is full, the least recently used
+ * entry that is not still loading is evicted. Loads in flight are never
+ * evicted, so while more than the maximum size are in flight the cache
+ * holds that many.
+ * <p/>
+ * Every caller is given the same promise, so a caller that cancels it
+ * cancels it for all of them.
+ */
+public class PromiseCache<K, V> {
+  private final Func1<? super K, ? extends Promise<V>> loader;
+  private final long ttlNanos;
+
+  // guarded by itself. In access order, so the eldest entry is the least
+  // recently used
+  private final Map<K, Entry<V>> entries;
+
+  // guarded by entries
+  private long hits;
+  private long misses;
+  private long coalesced;
+  private long evictions;
+
+  /**
+   * @param loader      loads the value of a key that is not in the cache
+   * @param maximumSize the most entries to keep
+   * @param ttl         how long a value is kept after it is loaded, or 0 to
+   *                    keep it until it is evicted
+   */
+  @SuppressWarnings("serial")
+  public PromiseCache(Func1<? super K, ? extends Promise<V>> loader, final int maximumSize, long ttl, TimeUnit unit) {
+    if (loader == null) {
+      throw new NullPointerException("loader");
+    }
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("maximumSize must be at least 1, was " + maximumSize);
+    }
+    if (ttl < 0) {
+      throw new IllegalArgumentException("ttl must not be negative, was " + ttl);
+    }
+
+    this.loader = loader;
+    this.ttlNanos = unit.toNanos(ttl);
+    this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+        if (this.size() <= maximumSize) {
+          return false;
+        }
+
+        // evicting a load in flight would only have it loaded again
+        Iterator<Entry<V>> entries = this.values().iterator();
+        while (entries.hasNext()) {
+          if (!entries.next().promise.isPending()) {
+            entries.remove();
+            PromiseCache.this.evictions++;
+            break;
+          }
+        }
+
+        return false;
+      }
+    };
+  }
+
+  /**
+   * @return the promise for the value of the given key: a cached one if
+   * there is one, the one already loading it if there is one of those, or
+   * else a new one from the loader
+   */
+  public Promise<V> get(K key) {
+    Entry<V> entry;
+
+    synchronized (this.entries) {
+      entry = this.entries.get(key);
+
+      if (entry != null) {
+        if (entry.promise.isPending()) {
+          this.coalesced++;
+          return entry.promise;
+        }
+
+        if (this.isLive(entry)) {
+          this.hits++;
+          return entry.promise;
+        }
+      }
+
+      this.misses++;
+
+      // placed before loading, so callers in the meantime wait on this load
+      entry = new Entry<V>(new Promise<V>());
+      this.entries.put(key, entry);
+    }
+
+    this.load(key, entry);
+    return entry.promise;
+  }
+
+  private void load(final K key, final Entry<V> entry) {
+    // unlike then/fail/fin handlers, this is told of cancellation as well
+    entry.promise.toObservable().subscribe(new Observer<V>() {
+      @Override
+      public void onNext(V value) {
+        long expires = System.nanoTime() + PromiseCache.this.ttlNanos;
+        entry.expires = expires == 0 ? 1 : expires;
+      }
+
+      @Override
+      public void onCompleted() {
+      }
+
+      @Override
+      public void onError(Throwable reason) {
+        PromiseCache.this.remove(key, entry);
+      }
+    });
+
+    Promise<V> loaded;
+
+    try {
+      loaded = this.loader.call(key);
+    } catch (RuntimeException e) {
+      entry.promise.reject(e);
+      return;
+    }
+
+    if (loaded == null) {
+      entry.promise.reject(new NullPointerException("PromiseCache loader returned null"));
+      return;
+    }
+
+    entry.promise.become(loaded);
+  }
+
+  /**
+   * Drops the given key, so that the next caller loads it again. Callers
+   * already waiting on a load still get its value.
+   */
+  public void invalidate(K key) {
+    synchronized (this.entries) {
+      this.entries.remove(key);
+    }
+  }
+
+  public void invalidateAll() {
+    synchronized (this.entries) {
+      this.entries.clear();
+    }
+  }
+
+  // fulfilled and not yet expired. Rejected and cancelled loads are never
+  // live, and are only kept until the observer in load removes them
+  private boolean isLive(Entry<V> entry) {
+    if (!entry.promise.isFulfilled()) {
+      return false;
+    }
+
+    // not yet stamped means only just fulfilled
+    long expires = entry.expires;
+    return this.ttlNanos == 0 || expires == 0 || expires - System.nanoTime() > 0;
+  }
+
+  private void remove(K key, Entry<V> entry) {
+    synchronized (this.entries) {
+      // it may have been replaced by a newer load in the meantime
+      if (this.entries.get(key) == entry) {
+        this.entries.remove(key);
+      }
+    }
+  }
+
+  /* Counters */
+
+  /**
+   * @return the number of entries, including loads in flight and values
+   * that have expired but not yet been replaced
+   */
+  public int size() {
+    synchronized (this.entries) {
+      return this.entries.size();
+    }
+  }
+
+  /**
+   * @return the number of calls given a value that was already loaded
+   */
+  public long getHits() {
+    synchronized (this.entries) {
+      return this.hits;
+    }
+  }
+
+  /**
+   * @return the number of calls that started a new load
+   */
+  public long getMisses() {
+    synchronized (this.entries) {
+      return this.misses;
+    }
+  }
+
+  /**
+   * @return the number of calls given a load that was already in flight
+   */
+  public long getCoalesced() {
+    synchronized (this.entries) {
+      return this.coalesced;
+    }
+  }
+
+  /**
+   * @return the number of entries evicted to keep within the maximum size
+   */
+  public long getEvictions() {
+    synchronized (this.entries) {
+      return this.evictions;
+    }
+  }
+
+  @Override
+  public String toString() {
+    synchronized (this.entries) {
+      return "size=" + this.entries.size()
+        + " hits=" + this.hits
+        + " misses=" + this.misses
+        + " coalesced=" + this.coalesced
+        + " evictions=" + this.evictions;
+    }
+  }
+
+  /* Private Classes */
+  private static final class Entry<V> {
+    final Promise<V> promise;
+
+    // when the value stops being served, in System.nanoTime(), or 0 until
+    // the handler stamping it has run
+    volatile long expires;
+
+    Entry(Promise<V> promise) {
+      this.promise = promise;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.darylteo.rx.promises.test;
+
+import com.darylteo.rx.promises.PromiseBatch;
+import com.darylteo.rx.promises.Promises;
+import com.darylteo.rx.promises.java.Promise;
+import com.darylteo.rx.promises.java.functions.PromiseAction;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PromiseBatchTests {
+  /* Every promise is fulfilled before any handler runs */
+  @Test
+  public void testFulfillAll() throws Exception {
+    final List<Promise<String>> promises = new ArrayList<Promise<String>>();
+    final List<String> results = new ArrayList<String>();
+
+    Map<Promise<String>, String> values = new LinkedHashMap<Promise<String>, String>();
+
+    for (int i = 0; i < 10; i++) {
+      Promise<String> promise = new Promise();
+      promise.then(new PromiseAction<String>() {
+        @Override
+        public void call(String value) {
+          for (Promise<String> promise : promises) {
+            assertTrue(promise.isFulfilled());
+          }
+
+          results.add(value);
+        }
+      });
+
+      promises.add(promise);
+      values.put(promise, "Value " + i);
+    }
+
+    Promises.fulfillAll(values);
+
+    assertEquals(10, results.size());
+    assertEquals("Value 0", results.get(0));
+    assertEquals("Value 9", results.get(9));
+  }
+
+  /* Handlers are handed to the executor as one task */
+  @Test
+  public void testFulfillAllOnExecutor() throws Exception {
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+    final AtomicInteger handled = new AtomicInteger();
+
+    Map<Promise<Integer>, Integer> values = new HashMap<Promise<Integer>, Integer>();
+
+    for (int i = 0; i < 100; i++) {
+      Promise<Integer> promise = new Promise();
+      promise.then(new PromiseAction<Integer>() {
+        @Override
+        public void call(Integer value) {
+          handled.incrementAndGet();
+        }
+      });
+
+      values.put(promise, i);
+    }
+
+    Promises.fulfillAll(values, new Executor() {
+      @Override
+      public void execute(Runnable task) {
+        tasks.add(task);
+      }
+    });
+
+    for (Promise<Integer> promise : values.keySet()) {
+      assertTrue(promise.isFulfilled());
+    }
+
+    assertEquals(1, tasks.size());
+    assertEquals(0, handled.get());
+
+    tasks.get(0).run();
+    assertEquals(100, handled.get());
+  }
+
+  /* Batches can mix fulfillments and rejections */
+  @Test
+  public void testBatch() throws Exception {
+    final List<String> results = new ArrayList<String>();
+
+    Promise<String> fulfilled = new Promise();
+    Promise<String> rejected = new Promise();
+    Promise<String> settled = new Promise();
+    settled.fulfill("Already");
+
+    fulfilled.then(new PromiseAction<String>() {
+      @Override
+      public void call(String value) {
+        results.add(value);
+      }
+    });
+    rejected.fail(new PromiseAction<Exception>() {
+      @Override
+      public void call(Exception reason) {
+        results.add(reason.getMessage());
+      }
+    });
+
+    PromiseBatch batch = new PromiseBatch()
+      .fulfill(fulfilled, "Hello")
+      .reject(rejected, new Exception("World"))
+      .fulfill(settled, "Ignored");
+
+    assertEquals(3, batch.size());
+    batch.settle();
+
+    assertEquals(Arrays.asList("Hello", "World"), results);
+    assertEquals("Already", settled.getValue());
+    assertEquals(0, batch.size());
+  }
+
+  /* If the executor will not take the batch, it is run in place */
+  @Test
+  public void testExecutorRejected() throws Exception {
+    final AtomicInteger handled = new AtomicInteger();
+
+    Promise<String> promise = new Promise();
+    promise.then(new PromiseAction<String>() {
+      @Override
+      public void call(String value) {
+        handled.incrementAndGet();
+      }
+    });
+
+    new PromiseBatch().fulfill(promise, "Hello").settle(new Executor() {
+      @Override
+      public void execute(Runnable task) {
+        throw new RejectedExecutionException();
+      }
+    });
+
+    assertEquals(1, handled.get());
+  }
+}
@@ -0,0 +1,176 @@
+package com.darylteo.rx.promises.test;
+
+import com.darylteo.rx.promises.java.Promise;
+import com.darylteo.rx.promises.java.PromiseCache;
+import org.junit.Test;
+import rx.functions.Func1;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PromiseCacheTests {
+  /* Callers for a key that is loading share the load */
+  @Test
+  public void testCoalesce() {
+    Loader loader = new Loader();
+    PromiseCache<String, String> cache = new PromiseCache<String, String>(loader, 10, 0, TimeUnit.SECONDS);
+
+    Promise<String> first = cache.get("Foo");
+    Promise<String> second = cache.get("Foo");
+
+    assertSame(first, second);
+    assertTrue(first.isPending());
+    assertEquals(1, loader.loads.get());
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getCoalesced());
+
+    loader.pending.get("Foo").fulfill("Bar");
+    assertEquals("Bar", second.getValue());
+  }
+
+  /* Loaded values are served from the cache */
+  @Test
+  public void testHit() {
+    Loader loader = new Loader();
+    PromiseCache<String, String> cache = new PromiseCache<String, String>(loader, 10, 0, TimeUnit.SECONDS);
+
+    cache.get("Foo");
+    loader.pending.get("Foo").fulfill("Bar");
+
+    assertEquals("Bar", cache.get("Foo").getValue());
+    assertEquals(1, loader.loads.get());
+    assertEquals(1, cache.getHits());
+  }
+
+  /* Rejected loads are dropped, so the next caller tries again */
+  @Test
+  public void testRejected() {
+    Loader loader = new Loader();
+    PromiseCache<String, String> cache = new PromiseCache<String, String>(loader, 10, 0, TimeUnit.SECONDS);
+
+    Promise<String> first = cache.get("Foo");
+    loader.pending.get("Foo").reject(new Exception("Foo"));
+
+    assertTrue(first.isRejected());
+    assertEquals(0, cache.size());
+
+    Promise<String> second = cache.get("Foo");
+    assertNotSame(first, second);
+    assertEquals(2, loader.loads.get());
+  }
+
+  /* Cancelled loads are dropped as well */
+  @Test
+  public void testCancelled() {
+    Loader loader = new Loader();
+    PromiseCache<String, String> cache = new PromiseCache<String, String>(loader, 10, 0, TimeUnit.SECONDS);
+
+    Promise<String> first = cache.get("Foo");
+    first.cancel();
+
+    assertTrue(first.isCancelled());
+    assertEquals(0, cache.size());
+
+    Promise<String> second = cache.get("Foo");
+    assertNotSame(first, second);
+    assertTrue(second.isPending());
+    assertEquals(2, loader.loads.get());
+  }
+
+  /* Values are loaded again once they are older than the time to live */
+  @Test
+  public void testExpired() throws Exception {
+    Loader loader = new Loader();
+    PromiseCache<String, String> cache = new PromiseCache<String, String>(loader, 10, 20, TimeUnit.MILLISECONDS);
+
+    Promise<String> first = cache.get("Foo");
+    loader.pending.get("Foo").fulfill("Bar");
+    assertSame(first, cache.get("Foo"));
+
+    Thread.sleep(50);
+
+    Promise<String> second = cache.get("Foo");
+    assertNotSame(first, second);
+    assertSame(second, cache.get("Foo"));
+    assertEquals(2, loader.loads.get());
+  }
+
+  /* The least recently used entry is evicted once the cache is full */
+  @Test
+  public void testEviction() {
+    Loader loader = new Loader();
+    PromiseCache<String, String> cache = new PromiseCache<String, String>(loader, 2, 0, TimeUnit.SECONDS);
+
+    Promise<String> a = cache.get("A");
+    cache.get("B");
+    loader.pending.get("A").fulfill("A");
+    loader.pending.get("B").fulfill("B");
+
+    cache.get("A");
+    cache.get("C");
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictions());
+    assertSame(a, cache.get("A"));
+
+    cache.get("B");
+    assertEquals(4, loader.loads.get());
+  }
+
+  /* Loads in flight are not evicted, even when they are the least recently used */
+  @Test
+  public void testEvictionSkipsLoading() {
+    Loader loader = new Loader();
+    PromiseCache<String, String> cache = new PromiseCache<String, String>(loader, 2, 0, TimeUnit.SECONDS);
+
+    Promise<String> a = cache.get("A");
+    cache.get("B");
+    loader.pending.get("B").fulfill("B");
+    cache.get("C");
+
+    // B was evicted in place of A
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictions());
+    assertSame(a, cache.get("A"));
+    assertEquals(3, loader.loads.get());
+
+    // with every entry in flight, the cache grows past its maximum size
+    cache.get("D");
+    assertEquals(3, cache.size());
+    assertEquals(1, cache.getEvictions());
+  }
+
+  /* A loader that throws rejects the load, and it is not cached */
+  @Test
+  public void testLoaderThrows() {
+    PromiseCache<String, String> cache = new PromiseCache<String, String>(new Func1<String, Promise<String>>() {
+      @Override
+      public Promise<String> call(String key) {
+        throw new IllegalStateException(key);
+      }
+    }, 10, 0, TimeUnit.SECONDS);
+
+    assertEquals("Foo", cache.get("Foo").getReason().getMessage());
+    assertEquals(0, cache.size());
+  }
+
+  // returns a pending promise for each key, to be settled by the test
+  private static class Loader implements Func1<String, Promise<String>> {
+    final AtomicInteger loads = new AtomicInteger();
+    final Map<String, Promise<String>> pending = new HashMap<String, Promise<String>>();
+
+    @Override
+    public Promise<String> call(String key) {
+      Promise<String> promise = new Promise<String>();
+
+      this.loads.incrementAndGet();
+      this.pending.put(key, promise);
+
+      return promise;
+    }
+  }
+}
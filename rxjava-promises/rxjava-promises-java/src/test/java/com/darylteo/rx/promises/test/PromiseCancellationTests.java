@@ -0,0 +1,232 @@
+package com.darylteo.rx.promises.test;
+
+import com.darylteo.rx.promises.AbstractPromise;
+import com.darylteo.rx.promises.java.Promise;
+import com.darylteo.rx.promises.java.functions.FinallyAction;
+import com.darylteo.rx.promises.java.functions.PromiseAction;
+import com.darylteo.rx.promises.java.functions.PromiseFunction;
+import com.darylteo.rx.promises.java.functions.RepromiseFunction;
+import org.junit.Test;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PromiseCancellationTests {
+  /* A cancelled promise stays cancelled, and runs none of its handlers */
+  @Test
+  public void testCancel() {
+    final Promise<String> promise = new Promise();
+
+    assertTrue(promise.cancel());
+    assertEquals(AbstractPromise.STATE.CANCELLED, promise.getState());
+    assertTrue(promise.isCancelled());
+    assertFalse(promise.isRejected());
+    assertTrue(promise.getReason() instanceof CancellationException);
+
+    // too late to settle it any other way
+    promise.fulfill("Hello World");
+    assertTrue(promise.isCancelled());
+    assertFalse(promise.cancel());
+
+    Promise<Void> next = promise
+      .then(new PromiseAction<String>() {
+        @Override
+        public void call(String value) {
+          fail("Handler should not run");
+        }
+      })
+      .fail(new PromiseAction<Exception>() {
+        @Override
+        public void call(Exception reason) {
+          fail("Handler should not run");
+        }
+      })
+      .fin(new FinallyAction() {
+        @Override
+        public void call() {
+          fail("Handler should not run");
+        }
+      });
+
+    assertTrue(next.isCancelled());
+  }
+
+  /* Settled promises cannot be cancelled */
+  @Test
+  public void testCancelSettled() {
+    Promise<String> promise = new Promise();
+    promise.fulfill("Hello World");
+
+    assertFalse(promise.cancel());
+    assertTrue(promise.isFulfilled());
+    assertEquals("Hello World", promise.getValue());
+  }
+
+  /* Cancelling a pending promise cancels the promises chained from it */
+  @Test
+  public void testCancelDownstream() {
+    final Promise<String> promise = new Promise();
+
+    Promise<String> next = promise.then(new PromiseFunction<String, String>() {
+      @Override
+      public String call(String value) {
+        fail("Handler should not run");
+        return value;
+      }
+    });
+
+    promise.cancel();
+    assertTrue(next.isCancelled());
+  }
+
+  /* Cancelling the end of a chain cancels every link before it */
+  @Test
+  public void testCancelUpstream() {
+    Promise<String> promise = new Promise();
+    Promise<String> middle = promise.then(new PromiseFunction<String, String>() {
+      @Override
+      public String call(String value) {
+        fail("Handler should not run");
+        return value;
+      }
+    });
+    Promise<String> last = middle.then(new PromiseFunction<String, String>() {
+      @Override
+      public String call(String value) {
+        fail("Handler should not run");
+        return value;
+      }
+    });
+
+    assertTrue(last.cancel());
+    assertTrue(middle.isCancelled());
+    assertTrue(promise.isCancelled());
+
+    promise.fulfill("Hello World");
+  }
+
+  /* Promises that something else is waiting on are left alone */
+  @Test
+  public void testCancelUpstreamShared() {
+    final Promise<String> promise = new Promise();
+    final Result<String> result = new Result<String>();
+
+    Promise<String> cancelled = promise.then(new PromiseFunction<String, String>() {
+      @Override
+      public String call(String value) {
+        fail("Handler should not run");
+        return value;
+      }
+    });
+
+    promise.then(new PromiseAction<String>() {
+      @Override
+      public void call(String value) {
+        result.value = value;
+      }
+    });
+
+    cancelled.cancel();
+    assertTrue(promise.isPending());
+
+    promise.fulfill("Hello World");
+    assertEquals("Hello World", result.value);
+    assertTrue(cancelled.isCancelled());
+  }
+
+  /* Cancellation reaches promises returned from handlers */
+  @Test
+  public void testCancelBecome() {
+    final Promise<String> promise = new Promise();
+    final Promise<String> inner = new Promise();
+
+    Promise<String> next = promise.then(new RepromiseFunction<String, String>() {
+      @Override
+      public Promise<String> call(String value) {
+        return inner;
+      }
+    });
+
+    promise.fulfill("Hello World");
+    assertTrue(next.isPending());
+
+    next.cancel();
+    assertTrue(inner.isCancelled());
+  }
+
+  /* Cancellation unsubscribes from the source Observable */
+  @Test
+  public void testCancelSource() {
+    final Result<Subscriber<? super String>> result = new Result<Subscriber<? super String>>();
+
+    Promise<String> promise = new Promise(Observable.create(new Observable.OnSubscribe<String>() {
+      @Override
+      public void call(Subscriber<? super String> subscriber) {
+        result.value = subscriber;
+      }
+    }));
+
+    promise.then(new PromiseAction<String>() {
+      @Override
+      public void call(String value) {
+        fail("Handler should not run");
+      }
+    }).cancel();
+
+    assertTrue(promise.isCancelled());
+    assertTrue(result.value.isUnsubscribed());
+  }
+
+  /* Cancelling a promise with a timeout stops the timer and cancels its source */
+  @Test
+  public void testCancelTimeout() throws Exception {
+    Promise<String> promise = new Promise();
+    Promise<String> timeout = promise.timeout(50, TimeUnit.MILLISECONDS);
+
+    timeout.cancel();
+    assertTrue(promise.isCancelled());
+
+    Thread.sleep(100);
+    assertTrue(timeout.isCancelled());
+  }
+
+  /* Cancelling a race cancels its inputs */
+  @Test
+  public void testCancelRace() {
+    Promise<String> first = new Promise();
+    Promise<String> second = new Promise();
+
+    Promise.race(Arrays.asList(first, second)).cancel();
+
+    assertTrue(first.isCancelled());
+    assertTrue(second.isCancelled());
+  }
+
+  /* Long chains are cancelled without running out of stack */
+  @Test
+  public void testCancelLongChain() {
+    Promise<Integer> promise = new Promise();
+    Promise<Integer> last = promise;
+
+    for (int i = 0; i < 100000; i++) {
+      last = last.then(new PromiseFunction<Integer, Integer>() {
+        @Override
+        public Integer call(Integer value) {
+          return value + 1;
+        }
+      });
+    }
+
+    last.cancel();
+    assertTrue(promise.isCancelled());
+  }
+
+  private class Result<T> {
+    volatile T value;
+  }
+}
@@ -0,0 +1,121 @@
+package com.darylteo.rx.promises.test;
+
+import com.darylteo.rx.promises.java.Promise;
+import com.darylteo.rx.promises.java.functions.PromiseAction;
+import com.darylteo.rx.promises.java.functions.PromiseFunction;
+import com.darylteo.rx.promises.java.functions.RepromiseFunction;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PromiseChainTests {
+  private static final int LINKS = 1000000;
+
+  /* Resolving a very long then-chain must not overflow the stack */
+  @Test
+  public void testLongChain() throws Exception {
+    final Result<Integer> result = new Result<Integer>();
+    final PromiseFunction<Integer, Integer> increment = new PromiseFunction<Integer, Integer>() {
+      @Override
+      public Integer call(Integer value) {
+        return value + 1;
+      }
+    };
+
+    Promise<Integer> first = new Promise();
+    Promise<Integer> last = first;
+    for (int i = 0; i < LINKS; i++) {
+      last = last.then(increment);
+    }
+
+    last.then(new PromiseAction<Integer>() {
+      @Override
+      public void call(Integer value) {
+        result.value = value;
+      }
+    });
+
+    first.fulfill(0);
+    assertEquals(Integer.valueOf(LINKS), result.value);
+  }
+
+  /* Rejections are forwarded down a very long chain too */
+  @Test
+  public void testLongChainRejected() throws Exception {
+    final Result<Exception> result = new Result<Exception>();
+    final PromiseFunction<Integer, Integer> unreachable = new PromiseFunction<Integer, Integer>() {
+      @Override
+      public Integer call(Integer value) {
+        fail("Fulfillment handler should not be called");
+        return value;
+      }
+    };
+
+    Promise<Integer> first = new Promise();
+    Promise<Integer> last = first;
+    for (int i = 0; i < LINKS; i++) {
+      last = last.then(unreachable);
+    }
+
+    last.fail(new PromiseAction<Exception>() {
+      @Override
+      public void call(Exception reason) {
+        result.value = reason;
+      }
+    });
+
+    first.reject("Foo");
+    assertEquals("Foo", result.value.getMessage());
+  }
+
+  /* A promise that becomes a promise that becomes a promise... */
+  @Test
+  public void testLongBecomeChain() throws Exception {
+    Promise<String> first = new Promise();
+    Promise<String> last = first;
+    for (int i = 0; i < LINKS; i++) {
+      Promise<String> next = new Promise();
+      last.become(next);
+      last = next;
+    }
+
+    last.fulfill("Hello World");
+    assertTrue(first.isFulfilled());
+    assertEquals("Hello World", first.getValue());
+  }
+
+  /* An asynchronous loop written as recursive repromises */
+  @Test
+  public void testRecursiveRepromise() throws Exception {
+    final Result<Integer> result = new Result<Integer>();
+
+    loop(0).then(new PromiseAction<Integer>() {
+      @Override
+      public void call(Integer value) {
+        result.value = value;
+      }
+    });
+
+    assertEquals(Integer.valueOf(LINKS), result.value);
+  }
+
+  private Promise<Integer> loop(final int i) {
+    Promise<Integer> promise = new Promise();
+    promise.fulfill(i);
+
+    if (i == LINKS) {
+      return promise;
+    }
+
+    return promise.then(new RepromiseFunction<Integer, Integer>() {
+      @Override
+      public Promise<Integer> call(Integer value) {
+        return loop(value + 1);
+      }
+    });
+  }
+
+  private class Result<T> {
+    T value;
+  }
+}
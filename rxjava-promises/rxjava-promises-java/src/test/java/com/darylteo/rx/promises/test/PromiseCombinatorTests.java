@@ -0,0 +1,407 @@
+package com.darylteo.rx.promises.test;
+
+import com.darylteo.rx.promises.AggregateException;
+import com.darylteo.rx.promises.java.Promise;
+import com.darylteo.rx.promises.java.functions.PromiseAction;
+import com.darylteo.rx.promises.java.functions.RepromiseFunction;
+import org.junit.Test;
+import rx.Observable;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PromiseCombinatorTests {
+
+  /* all() keeps the order of its inputs, not the order they are fulfilled in */
+  @Test
+  public void testAll() throws Exception {
+    final Result<List<String>> result = new Result<List<String>>();
+    Promise<String> p1 = new Promise();
+    Promise<String> p2 = new Promise();
+    Promise<String> p3 = new Promise();
+
+    Promise.all(Arrays.asList(p1, p2, p3)).then(new PromiseAction<List<String>>() {
+      @Override
+      public void call(List<String> values) {
+        result.value = values;
+      }
+    });
+
+    p3.fulfill("World");
+    p1.fulfill("Hello");
+    assertNull(result.value);
+
+    p2.fulfill(null);
+    assertEquals(Arrays.asList("Hello", null, "World"), result.value);
+  }
+
+  @Test
+  public void testAllRejected() throws Exception {
+    final Result<Exception> result = new Result<Exception>();
+    Promise<String> p1 = new Promise();
+    Promise<String> p2 = new Promise();
+
+    Promise<List<String>> all = Promise.all(Arrays.asList(p1, p2));
+    all.fail(new PromiseAction<Exception>() {
+      @Override
+      public void call(Exception reason) {
+        result.value = reason;
+      }
+    });
+
+    p2.reject("Foo");
+    assertTrue(all.isRejected());
+    assertEquals("Foo", result.value.getMessage());
+
+    p1.fulfill("Hello");
+    assertTrue(all.isRejected());
+  }
+
+  @Test
+  public void testAllEmpty() throws Exception {
+    Promise<List<String>> all = Promise.all(Collections.<Promise<String>>emptyList());
+
+    assertTrue(all.isFulfilled());
+    assertTrue(all.getValue().isEmpty());
+  }
+
+  @Test
+  public void testAllSettled() throws Exception {
+    final Result<List<Promise<String>>> result = new Result<List<Promise<String>>>();
+    Promise<String> p1 = new Promise();
+    Promise<String> p2 = new Promise();
+
+    Promise.allSettled(Arrays.asList(p1, p2)).then(new PromiseAction<List<Promise<String>>>() {
+      @Override
+      public void call(List<Promise<String>> promises) {
+        result.value = promises;
+      }
+    });
+
+    p2.reject("Foo");
+    assertNull(result.value);
+
+    p1.fulfill("Hello");
+    assertEquals(2, result.value.size());
+    assertSame(p1, result.value.get(0));
+    assertSame(p2, result.value.get(1));
+    assertEquals("Hello", result.value.get(0).getValue());
+    assertEquals("Foo", result.value.get(1).getReason().getMessage());
+  }
+
+  /* A wide fan-in fulfilled from several threads */
+  @Test
+  public void testAllConcurrent() throws Exception {
+    final int count = 10000;
+    final CountDownLatch latch = new CountDownLatch(1);
+    final Result<List<Integer>> result = new Result<List<Integer>>();
+    final List<Promise<Integer>> promises = new ArrayList<Promise<Integer>>();
+
+    for (int i = 0; i < count; i++) {
+      promises.add(new Promise<Integer>());
+    }
+
+    Promise.all(promises).then(new PromiseAction<List<Integer>>() {
+      @Override
+      public void call(List<Integer> values) {
+        result.value = values;
+        latch.countDown();
+      }
+    });
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int t = 0; t < 4; t++) {
+      final int offset = t;
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = offset; i < count; i += 4) {
+            promises.get(i).fulfill(i);
+          }
+        }
+      });
+    }
+
+    assertTrue(latch.await(5l, TimeUnit.SECONDS));
+    executor.shutdown();
+
+    assertEquals(count, result.value.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals(Integer.valueOf(i), result.value.get(i));
+    }
+  }
+
+  /* race() is settled by the first input, fulfilled or rejected */
+  @Test
+  public void testRace() throws Exception {
+    Promise<String> p1 = new Promise();
+    Promise<String> p2 = new Promise();
+    Promise<String> p3 = new Promise();
+
+    Promise<String> race = Promise.race(Arrays.asList(p1, p2));
+    p2.fulfill("World");
+    p1.fulfill("Hello");
+    assertEquals("World", race.getValue());
+
+    race = Promise.race(Arrays.asList(p3, p1));
+    assertEquals("Hello", race.getValue());
+
+    Promise<String> p4 = new Promise();
+    race = Promise.race(Arrays.asList(p3, p4));
+    p4.reject("Foo");
+    assertTrue(race.isRejected());
+    assertEquals("Foo", race.getReason().getMessage());
+  }
+
+  /* any() skips rejections until an input is fulfilled */
+  @Test
+  public void testAny() throws Exception {
+    Promise<String> p1 = new Promise();
+    Promise<String> p2 = new Promise();
+
+    Promise<String> any = Promise.any(Arrays.asList(p1, p2));
+    p1.reject("Foo");
+    assertTrue(any.isPending());
+
+    p2.fulfill("Hello");
+    assertEquals("Hello", any.getValue());
+  }
+
+  @Test
+  public void testAnyRejected() throws Exception {
+    Promise<String> p1 = new Promise();
+    Promise<String> p2 = new Promise();
+
+    Promise<String> any = Promise.any(Arrays.asList(p1, p2));
+    p2.reject("Bar");
+    p1.reject("Foo");
+
+    assertTrue(any.isRejected());
+    AggregateException reason = (AggregateException) any.getReason();
+    assertEquals(2, reason.getReasons().size());
+    assertEquals("Foo", reason.getReasons().get(0).getMessage());
+    assertEquals("Bar", reason.getReasons().get(1).getMessage());
+
+    assertTrue(Promise.any(Collections.<Promise<String>>emptyList()).getReason() instanceof AggregateException);
+  }
+
+  /* Losing inputs must not keep the race (or anything chained to it) reachable */
+  @Test
+  public void testRaceDetachesLosers() throws Exception {
+    Promise<String> winner = new Promise();
+    Promise<String> loser = new Promise();
+
+    Promise<String> race = Promise.race(Arrays.asList(loser, winner));
+    WeakReference<Promise<String>> ref = new WeakReference<Promise<String>>(race);
+    race = null;
+
+    winner.fulfill("Hello");
+
+    for (int i = 0; i < 10 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertNull("Race promise is still reachable from a losing input", ref.get());
+    assertTrue(loser.isPending());
+  }
+
+  /* mapConcurrent() keeps the order of its items, with a bounded number pending */
+  @Test
+  public void testMapConcurrent() throws Exception {
+    final int count = 1000;
+    final AtomicInteger active = new AtomicInteger();
+    final AtomicInteger maxActive = new AtomicInteger();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    Promise<List<Integer>> result = Promise.mapConcurrent(range(count, new AtomicInteger()), 3, new RepromiseFunction<Integer, Integer>() {
+      @Override
+      public Promise<Integer> call(final Integer value) {
+        final Promise<Integer> promise = new Promise<Integer>();
+
+        int now = active.incrementAndGet();
+        int max;
+        while (now > (max = maxActive.get()) && !maxActive.compareAndSet(max, now)) {
+          // retry
+        }
+
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            active.decrementAndGet();
+            promise.fulfill(value * 2);
+          }
+        });
+
+        return promise;
+      }
+    });
+
+    List<Integer> values = result.toObservable().toBlockingObservable().single();
+    executor.shutdown();
+
+    assertEquals(count, values.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals(Integer.valueOf(i * 2), values.get(i));
+    }
+    assertTrue("At most 3 pending at once, saw " + maxActive.get(), maxActive.get() <= 3);
+  }
+
+  /* Items are only taken once there is room for them */
+  @Test
+  public void testMapConcurrentLazy() throws Exception {
+    final AtomicInteger taken = new AtomicInteger();
+    final List<Promise<Integer>> pending = new ArrayList<Promise<Integer>>();
+
+    Promise<List<Integer>> result = Promise.mapConcurrent(range(10, taken), 2, new RepromiseFunction<Integer, Integer>() {
+      @Override
+      public Promise<Integer> call(Integer value) {
+        Promise<Integer> promise = new Promise<Integer>();
+        pending.add(promise);
+        return promise;
+      }
+    });
+
+    assertEquals(2, taken.get());
+
+    pending.get(1).fulfill(1);
+    assertEquals(3, taken.get());
+
+    for (int i = 0; i < 10; i++) {
+      pending.get(i).fulfill(i);
+    }
+
+    assertEquals(10, taken.get());
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), result.getValue());
+  }
+
+  /* The first rejection rejects the result, and stops everything else */
+  @Test
+  public void testMapConcurrentRejected() throws Exception {
+    final AtomicInteger taken = new AtomicInteger();
+    final List<Promise<Integer>> pending = new ArrayList<Promise<Integer>>();
+
+    Promise<List<Integer>> result = Promise.mapConcurrent(range(10, taken), 3, new RepromiseFunction<Integer, Integer>() {
+      @Override
+      public Promise<Integer> call(Integer value) {
+        Promise<Integer> promise = new Promise<Integer>();
+        pending.add(promise);
+        return promise;
+      }
+    });
+
+    pending.get(1).reject(new Exception("Foo"));
+
+    assertEquals("Foo", result.getReason().getMessage());
+    assertEquals(3, taken.get());
+    assertTrue(pending.get(0).isCancelled());
+    assertTrue(pending.get(2).isCancelled());
+  }
+
+  /* Cancelling the result stops taking items and cancels the pending ones */
+  @Test
+  public void testMapConcurrentCancel() throws Exception {
+    final AtomicInteger taken = new AtomicInteger();
+    final List<Promise<Integer>> pending = new ArrayList<Promise<Integer>>();
+
+    Promise<List<Integer>> result = Promise.mapConcurrent(range(10, taken), 2, new RepromiseFunction<Integer, Integer>() {
+      @Override
+      public Promise<Integer> call(Integer value) {
+        Promise<Integer> promise = new Promise<Integer>();
+        pending.add(promise);
+        return promise;
+      }
+    });
+
+    result.cancel();
+
+    assertTrue(pending.get(0).isCancelled());
+    assertTrue(pending.get(1).isCancelled());
+    assertEquals(2, taken.get());
+  }
+
+  /* A long run of promises that are settled already uses constant stack */
+  @Test
+  public void testMapConcurrentSettled() throws Exception {
+    Promise<List<Integer>> result = Promise.mapConcurrent(range(100000, new AtomicInteger()), 8, new RepromiseFunction<Integer, Integer>() {
+      @Override
+      public Promise<Integer> call(Integer value) {
+        return Promise.resolved(value);
+      }
+    });
+
+    assertEquals(100000, result.getValue().size());
+    assertEquals(Integer.valueOf(99999), result.getValue().get(99999));
+  }
+
+  /* streamConcurrent() emits each value once it is ready */
+  @Test
+  public void testStreamConcurrent() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    Observable<Integer> stream = Promise.streamConcurrent(range(100, new AtomicInteger()), 4, new RepromiseFunction<Integer, Integer>() {
+      @Override
+      public Promise<Integer> call(final Integer value) {
+        final Promise<Integer> promise = new Promise<Integer>();
+
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            promise.fulfill(value);
+          }
+        });
+
+        return promise;
+      }
+    });
+
+    List<Integer> values = new ArrayList<Integer>(stream.toList().toBlockingObservable().single());
+    executor.shutdown();
+
+    Collections.sort(values);
+    assertEquals(100, values.size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals(Integer.valueOf(i), values.get(i));
+    }
+  }
+
+  // the integers from 0 to count - 1, counting how many have been taken
+  private static Iterable<Integer> range(final int count, final AtomicInteger taken) {
+    return new Iterable<Integer>() {
+      @Override
+      public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+          @Override
+          public boolean hasNext() {
+            return taken.get() < count;
+          }
+
+          @Override
+          public Integer next() {
+            return taken.getAndIncrement();
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+  }
+
+  private class Result<T> {
+    volatile T value;
+  }
+}
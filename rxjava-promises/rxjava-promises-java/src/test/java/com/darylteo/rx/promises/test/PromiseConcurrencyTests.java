@@ -0,0 +1,170 @@
+package com.darylteo.rx.promises.test;
+
+import com.darylteo.rx.promises.AbstractPromise;
+import com.darylteo.rx.promises.java.Promise;
+import com.darylteo.rx.promises.java.functions.PromiseAction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PromiseConcurrencyTests {
+  private static final int THREADS = 4;
+  private static final int ITERATIONS = 5000;
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /* Racing fulfill/reject calls must settle the promise exactly once */
+  @Test
+  public void testSettleOnce() throws Exception {
+    for (int i = 0; i < ITERATIONS; i++) {
+      final Promise<Integer> promise = new Promise();
+      final AtomicInteger fulfilled = new AtomicInteger();
+      final AtomicInteger rejected = new AtomicInteger();
+
+      promise.then(new PromiseAction<Integer>() {
+        @Override
+        public void call(Integer value) {
+          fulfilled.incrementAndGet();
+        }
+      }, new PromiseAction<Exception>() {
+        @Override
+        public void call(Exception reason) {
+          rejected.incrementAndGet();
+        }
+      });
+
+      race(new Runnable[]{
+        new Runnable() {
+          public void run() {
+            promise.fulfill(1);
+          }
+        },
+        new Runnable() {
+          public void run() {
+            promise.fulfill(2);
+          }
+        },
+        new Runnable() {
+          public void run() {
+            promise.reject("Foo");
+          }
+        },
+        new Runnable() {
+          public void run() {
+            promise.reject(new IllegalStateException());
+          }
+        }
+      });
+
+      assertEquals(1, fulfilled.get() + rejected.get());
+      if (promise.isFulfilled()) {
+        assertEquals(1, fulfilled.get());
+        assertNull(promise.getReason());
+        assertTrue(promise.getValue() == 1 || promise.getValue() == 2);
+      } else {
+        assertEquals(AbstractPromise.STATE.REJECTED, promise.getState());
+        assertEquals(1, rejected.get());
+        assertNull(promise.getValue());
+        assertNotNull(promise.getReason());
+      }
+    }
+  }
+
+  /* Handlers registered while another thread fulfills must each run exactly once */
+  @Test
+  public void testRegisterDuringSettle() throws Exception {
+    for (int i = 0; i < ITERATIONS; i++) {
+      final Promise<String> promise = new Promise();
+      final AtomicInteger calls = new AtomicInteger();
+      final PromiseAction<String> handler = new PromiseAction<String>() {
+        @Override
+        public void call(String value) {
+          assertEquals("Hello World", value);
+          calls.incrementAndGet();
+        }
+      };
+
+      Runnable register = new Runnable() {
+        public void run() {
+          for (int j = 0; j < 10; j++) {
+            promise.then(handler);
+          }
+        }
+      };
+
+      race(new Runnable[]{
+        register,
+        register,
+        register,
+        new Runnable() {
+          public void run() {
+            promise.fulfill("Hello World");
+          }
+        }
+      });
+
+      assertEquals(30, calls.get());
+    }
+  }
+
+  /* A promise fulfilled on one thread must be seen as fulfilled on another */
+  @Test
+  public void testVisibility() throws Exception {
+    for (int i = 0; i < ITERATIONS; i++) {
+      final Promise<String> promise = new Promise();
+      final CountDownLatch latch = new CountDownLatch(1);
+
+      executor.execute(new Runnable() {
+        public void run() {
+          promise.fulfill("Hello World");
+          latch.countDown();
+        }
+      });
+
+      while (promise.isPending()) {
+        Thread.yield();
+      }
+
+      assertEquals(AbstractPromise.STATE.FULFILLED, promise.getState());
+      assertEquals("Hello World", promise.getValue());
+      assertTrue(latch.await(2l, TimeUnit.SECONDS));
+    }
+  }
+
+  // starts all tasks as close together as possible and waits for them to finish
+  private void race(Runnable[] tasks) throws Exception {
+    final CyclicBarrier barrier = new CyclicBarrier(tasks.length);
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+
+    for (final Runnable task : tasks) {
+      futures.add(executor.submit(new Callable<Void>() {
+        public Void call() throws Exception {
+          barrier.await();
+          task.run();
+          return null;
+        }
+      }));
+    }
+
+    for (Future<?> future : futures) {
+      future.get(5l, TimeUnit.SECONDS);
+    }
+  }
+}
@@ -0,0 +1,211 @@
+package com.darylteo.rx.promises.test;
+
+import com.darylteo.rx.promises.DefaultPromiseMetrics;
+import com.darylteo.rx.promises.HandlerAdapter;
+import com.darylteo.rx.promises.Promises;
+import com.darylteo.rx.promises.java.Promise;
+import com.darylteo.rx.promises.java.functions.PromiseFunction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Run with
+ * -Dcom.darylteo.rx.promises.metrics=com.darylteo.rx.promises.DefaultPromiseMetrics
+ * (see the diagnosticsTest task).
+ */
+public class PromiseMetricsTests {
+  private DefaultPromiseMetrics metrics;
+
+  @Before
+  public void setUp() {
+    assumeTrue(Promises.getMetrics() instanceof DefaultPromiseMetrics);
+    metrics = (DefaultPromiseMetrics) Promises.getMetrics();
+  }
+
+  @Test
+  public void testCounters() throws Exception {
+    long created = metrics.getCreated();
+    long fulfilled = metrics.getFulfilled();
+    long rejected = metrics.getRejected();
+    long cancelled = metrics.getCancelled();
+
+    new Promise<String>().fulfill("Hello World");
+    new Promise<String>().reject("Foo");
+    new Promise<String>().cancel();
+    Promise.resolved("Hello World");
+    new Promise<String>();
+
+    assertEquals(created + 5, metrics.getCreated());
+    assertEquals(fulfilled + 2, metrics.getFulfilled());
+    assertEquals(rejected + 1, metrics.getRejected());
+    assertEquals(cancelled + 1, metrics.getCancelled());
+  }
+
+  @Test
+  public void testSettleLatency() throws Exception {
+    long count = metrics.getSettleNanos().getCount();
+
+    Promise<String> promise = new Promise();
+    Thread.sleep(20);
+    promise.fulfill("Hello World");
+
+    assertEquals(count + 1, metrics.getSettleNanos().getCount());
+    assertTrue(metrics.getSettleNanos().getMax() >= 20000000);
+  }
+
+  @Test
+  public void testChainDepth() throws Exception {
+    PromiseFunction<Integer, Integer> increment = new PromiseFunction<Integer, Integer>() {
+      @Override
+      public Integer call(Integer value) {
+        return value + 1;
+      }
+    };
+
+    Promise<Integer> last = new Promise();
+    for (int i = 0; i < 100; i++) {
+      last = last.then(increment);
+    }
+
+    assertTrue(metrics.getChainDepth().getMax() >= 100);
+  }
+
+  @Test
+  public void testHandlerFailures() throws Exception {
+    PromiseFunction<String, String> failing = new PromiseFunction<String, String>() {
+      @Override
+      public String call(String value) {
+        throw new IllegalStateException(value);
+      }
+    };
+
+    long failures = metrics.getHandlerFailures();
+
+    Promise<String> promise = new Promise();
+    promise.then(failing);
+    promise.then(failing);
+    promise.fulfill("Foo");
+
+    assertEquals(failures + 2, metrics.getHandlerFailures());
+    assertEquals(Long.valueOf(2), metrics.getHandlerFailuresByClass().get(failing.getClass().getName()));
+  }
+
+  /* Adapters are counted by the class of the handler that they wrap */
+  @Test
+  public void testHandlerAdapter() throws Exception {
+    class Wrapped {
+    }
+
+    class Adapter implements PromiseFunction<String, String>, HandlerAdapter {
+      @Override
+      public String call(String value) {
+        throw new IllegalStateException(value);
+      }
+
+      @Override
+      public Class<?> getHandlerClass() {
+        return Wrapped.class;
+      }
+    }
+
+    Promise<String> promise = new Promise();
+    promise.then(new Adapter());
+    promise.fulfill("Foo");
+
+    assertEquals(Long.valueOf(1), metrics.getHandlerFailuresByClass().get(Wrapped.class.getName()));
+    assertNull(metrics.getHandlerFailuresByClass().get(Adapter.class.getName()));
+    assertEquals(1.0, metrics.getRejectionRateBySite().get(Wrapped.class.getName()), 0);
+  }
+
+  /* Handlers that throw checked exceptions, as other JVM languages can */
+  @Test
+  public void testHandlerCheckedFailure() throws Exception {
+    PromiseFunction<String, String> failing = new PromiseFunction<String, String>() {
+      @Override
+      public String call(String value) {
+        throw PromiseMetricsTests.<RuntimeException>sneakyThrow(new IOException(value));
+      }
+    };
+
+    long failures = metrics.getHandlerFailures();
+    long runs = metrics.getHandlerNanos().getCount();
+
+    Promise<String> promise = new Promise();
+    Promise<String> last = promise.then(failing);
+    promise.fulfill("Foo");
+
+    assertTrue(last.getReason() instanceof IOException);
+    assertEquals(failures + 1, metrics.getHandlerFailures());
+    assertEquals(runs + 1, metrics.getHandlerNanos().getCount());
+  }
+
+  /* Cancelling the end of a chain counts every promise it cancels */
+  @Test
+  public void testCancelChain() throws Exception {
+    PromiseFunction<String, String> identity = new PromiseFunction<String, String>() {
+      @Override
+      public String call(String value) {
+        return value;
+      }
+    };
+
+    long pending = metrics.getPending();
+    long cancelled = metrics.getCancelled();
+
+    Promise<String> promise = new Promise();
+    Promise<String> last = promise.then(identity).then(identity);
+    last.cancel();
+
+    assertTrue(promise.isCancelled());
+    assertEquals(cancelled + 3, metrics.getCancelled());
+    assertEquals(pending, metrics.getPending());
+  }
+
+  @Test
+  public void testRejectionRateBySite() throws Exception {
+    PromiseFunction<String, String> failing = new PromiseFunction<String, String>() {
+      @Override
+      public String call(String value) {
+        if (value.equals("Foo")) {
+          throw new IllegalStateException(value);
+        }
+
+        return value;
+      }
+    };
+
+    String[] values = {"Foo", "Bar", "Bar", "Bar"};
+    for (String value : values) {
+      Promise<String> promise = new Promise();
+      promise.then(failing);
+      promise.fulfill(value);
+    }
+
+    assertEquals(0.25, metrics.getRejectionRateBySite().get(failing.getClass().getName()), 0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E extends Throwable> E sneakyThrow(Throwable e) throws E {
+    throw (E) e;
+  }
+
+  @Test
+  public void testHistogram() throws Exception {
+    DefaultPromiseMetrics.Histogram histogram = new DefaultPromiseMetrics.Histogram();
+    assertEquals(0, histogram.getValueAtPercentile(50));
+
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+
+    assertEquals(100, histogram.getCount());
+    assertEquals(100, histogram.getMax());
+    assertEquals(63, histogram.getValueAtPercentile(50));
+    assertEquals(100, histogram.getValueAtPercentile(99));
+  }
+}
@@ -0,0 +1,164 @@
+package com.darylteo.rx.promises.test;
+
+import com.darylteo.rx.promises.java.Promise;
+import com.darylteo.rx.promises.java.functions.FinallyAction;
+import com.darylteo.rx.promises.java.functions.PromiseAction;
+import com.darylteo.rx.promises.java.functions.PromiseFunction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class PromiseSchedulingTests {
+  private static final String WORKER = "promise-worker";
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        return new Thread(r, WORKER);
+      }
+    });
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /* Handlers run on the fulfilling thread by default */
+  @Test
+  public void testSynchronousByDefault() throws Exception {
+    final Promise<String> promise = new Promise();
+    final Result<Thread> result = new Result<Thread>();
+
+    promise.then(new PromiseAction<String>() {
+      @Override
+      public void call(String value) {
+        result.value = Thread.currentThread();
+      }
+    });
+
+    promise.fulfill("Hello World");
+    assertSame(Thread.currentThread(), result.value);
+  }
+
+  /* Handlers are moved onto the executor */
+  @Test
+  public void testOnExecutor() throws Exception {
+    final Promise<String> promise = new Promise();
+    final CountDownLatch latch = new CountDownLatch(2);
+    final Result<String> result = new Result<String>();
+
+    Promise<String> scheduled = promise.on(executor);
+
+    scheduled
+      .then(new PromiseFunction<String, String>() {
+        @Override
+        public String call(String value) {
+          assertEquals(WORKER, Thread.currentThread().getName());
+          return value.toUpperCase();
+        }
+      })
+      .then(new PromiseAction<String>() {
+        @Override
+        public void call(String value) {
+          result.value = value;
+          latch.countDown();
+        }
+      });
+
+    promise.fulfill("Hello World");
+
+    // registered after settlement, still run on the executor
+    scheduled.fin(new FinallyAction() {
+      @Override
+      public void call() {
+        assertEquals(WORKER, Thread.currentThread().getName());
+        latch.countDown();
+      }
+    });
+
+    assertTrue(latch.await(2l, TimeUnit.SECONDS));
+    assertEquals("HELLO WORLD", result.value);
+  }
+
+  /* Rejections are moved onto the executor too */
+  @Test
+  public void testOnExecutorRejected() throws Exception {
+    final Promise<String> promise = new Promise();
+    final CountDownLatch latch = new CountDownLatch(1);
+    final Result<String> result = new Result<String>();
+
+    promise.on(executor).fail(new PromiseAction<Exception>() {
+      @Override
+      public void call(Exception reason) {
+        result.value = Thread.currentThread().getName() + ":" + reason.getMessage();
+        latch.countDown();
+      }
+    });
+
+    promise.reject("Foo");
+
+    assertTrue(latch.await(2l, TimeUnit.SECONDS));
+    assertEquals(WORKER + ":Foo", result.value);
+  }
+
+  /* A shut down executor rejects the next promise */
+  @Test
+  public void testOnExecutorShutdown() throws Exception {
+    final Promise<String> promise = new Promise();
+    final Result<Exception> result = new Result<Exception>();
+
+    executor.shutdown();
+    promise.on(executor)
+      .then(new PromiseAction<String>() {
+        @Override
+        public void call(String value) {
+          fail("Handler should not run");
+        }
+      })
+      .fail(new PromiseAction<Exception>() {
+        @Override
+        public void call(Exception reason) {
+          result.value = reason;
+        }
+      });
+
+    promise.fulfill("Hello World");
+    assertTrue(result.value instanceof RejectedExecutionException);
+  }
+
+  /* Handlers are moved onto the scheduler */
+  @Test
+  public void testOnScheduler() throws Exception {
+    final Promise<String> promise = new Promise();
+    final CountDownLatch latch = new CountDownLatch(1);
+    final Result<Thread> result = new Result<Thread>();
+
+    promise.on(Schedulers.newThread()).then(new PromiseAction<String>() {
+      @Override
+      public void call(String value) {
+        result.value = Thread.currentThread();
+        latch.countDown();
+      }
+    });
+
+    promise.fulfill("Hello World");
+
+    assertTrue(latch.await(2l, TimeUnit.SECONDS));
+    assertNotNull(result.value);
+    assertNotSame(Thread.currentThread(), result.value);
+  }
+
+  private class Result<T> {
+    volatile T value;
+  }
+}
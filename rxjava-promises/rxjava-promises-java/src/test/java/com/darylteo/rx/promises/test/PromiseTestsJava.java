@@ -1,13 +1,16 @@
 package com.darylteo.rx.promises.test;
 
+import com.darylteo.rx.promises.PromiseRejection;
 import com.darylteo.rx.promises.java.Promise;
 import com.darylteo.rx.promises.java.functions.*;
 import org.junit.Test;
 import rx.exceptions.OnErrorThrowable;
+import rx.functions.Function;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -579,6 +582,93 @@ public class PromiseTestsJava {
     });
   }
 
+  @Test
+  public void testResolved() throws Exception {
+    final Result<String> result = new Result<String>();
+
+    Promise<String> p = Promise.resolved("Hello World");
+    assertTrue(p.isFulfilled());
+
+    p.then(new PromiseAction<String>() {
+      @Override
+      public void call(String value) {
+        result.value = value;
+      }
+    });
+
+    // run as soon as registered
+    assertEquals("Hello World", result.value);
+  }
+
+  @Test
+  public void testResolvedNull() throws Exception {
+    Promise<Void> p = Promise.resolved(null);
+
+    assertTrue(p.isFulfilled());
+    assertNull(p.getValue());
+    assertSame(p, Promise.<String>resolved(null));
+
+    // the shared instance cannot be settled again
+    p.fulfill(null);
+    assertFalse(p.cancel());
+    assertTrue(p.isFulfilled());
+  }
+
+  @Test
+  public void testRejected() throws Exception {
+    final Result<String> result = new Result<String>();
+
+    Promise<String> p = Promise.rejected("Foo");
+    assertTrue(p.isRejected());
+
+    p.fail(new PromiseAction<Exception>() {
+      @Override
+      public void call(Exception reason) {
+        result.value = reason.getMessage();
+      }
+    });
+    assertEquals("Foo", result.value);
+
+    IllegalStateException reason = new IllegalStateException();
+    assertSame(reason, Promise.rejected(reason).getReason());
+  }
+
+  /* Non-exception reasons are kept, and only formatted when needed */
+  @Test
+  public void testRejectionReason() throws Exception {
+    final AtomicInteger formatted = new AtomicInteger();
+    Object reason = new Object() {
+      @Override
+      public String toString() {
+        formatted.incrementAndGet();
+        return "Foo";
+      }
+    };
+
+    Promise<String> p = new Promise();
+    p.reject(reason);
+
+    assertTrue(p.getReason() instanceof PromiseRejection);
+    assertSame(reason, ((PromiseRejection) p.getReason()).getReason());
+    assertEquals(0, p.getReason().getStackTrace().length);
+    assertEquals(0, formatted.get());
+
+    assertEquals("Foo", p.getReason().getMessage());
+    assertEquals("Foo", p.getReason().getMessage());
+    assertEquals(1, formatted.get());
+  }
+
+  /* Unsupported handler types are rejected when registered */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidHandler() throws Exception {
+    new Promise<String>() {
+      {
+        this.promise(new Function() {
+        }, null, null);
+      }
+    };
+  }
+
   public Promise<String> makePromise(final String value) {
     final Promise<String> promise = new Promise();
 
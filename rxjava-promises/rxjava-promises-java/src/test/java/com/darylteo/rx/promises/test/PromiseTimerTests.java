@@ -0,0 +1,269 @@
+package com.darylteo.rx.promises.test;
+
+import com.darylteo.rx.promises.HashedWheelTimer;
+import com.darylteo.rx.promises.RetryPolicy;
+import com.darylteo.rx.promises.Timer;
+import com.darylteo.rx.promises.java.Promise;
+import com.darylteo.rx.promises.java.functions.PromiseAction;
+import org.junit.Test;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PromiseTimerTests {
+
+  @Test
+  public void testTimeoutExpires() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final Result<Exception> result = new Result<Exception>();
+    Promise<String> promise = new Promise();
+
+    promise.timeout(50, TimeUnit.MILLISECONDS).fail(new PromiseAction<Exception>() {
+      @Override
+      public void call(Exception reason) {
+        result.value = reason;
+        latch.countDown();
+      }
+    });
+
+    assertTrue(latch.await(2l, TimeUnit.SECONDS));
+    assertTrue(result.value instanceof TimeoutException);
+
+    // the original promise is unaffected
+    assertTrue(promise.isPending());
+  }
+
+  @Test
+  public void testTimeoutSettledFirst() throws Exception {
+    Promise<String> promise = new Promise();
+    Promise<String> timeout = promise.timeout(50, TimeUnit.MILLISECONDS);
+
+    promise.fulfill("Hello World");
+    assertEquals("Hello World", timeout.getValue());
+
+    Thread.sleep(100);
+    assertTrue(timeout.isFulfilled());
+
+    promise = new Promise();
+    timeout = promise.timeout(50, TimeUnit.MILLISECONDS);
+
+    promise.reject("Foo");
+    assertEquals("Foo", timeout.getReason().getMessage());
+  }
+
+  @Test
+  public void testDelay() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final Result<String> result = new Result<String>();
+    long start = System.nanoTime();
+
+    Promise.delay("Hello World", 50, TimeUnit.MILLISECONDS).then(new PromiseAction<String>() {
+      @Override
+      public void call(String value) {
+        result.value = value;
+        latch.countDown();
+      }
+    });
+
+    assertTrue(latch.await(2l, TimeUnit.SECONDS));
+    assertEquals("Hello World", result.value);
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  /* Cancelled tasks never run, and the rest run in deadline order */
+  @Test
+  public void testWheelTimer() throws Exception {
+    HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 8);
+    final CountDownLatch latch = new CountDownLatch(2);
+    final StringBuffer order = new StringBuffer();
+
+    try {
+      Timer.Timeout cancelled = timer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          order.append("cancelled");
+        }
+      }, 10, TimeUnit.MILLISECONDS);
+
+      // longer than a full turn of the wheel
+      timer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          order.append("B");
+          latch.countDown();
+        }
+      }, 30, TimeUnit.MILLISECONDS);
+
+      timer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          order.append("A");
+          latch.countDown();
+        }
+      }, 5, TimeUnit.MILLISECONDS);
+
+      assertTrue(cancelled.cancel());
+      assertFalse(cancelled.cancel());
+
+      assertTrue(latch.await(2l, TimeUnit.SECONDS));
+      assertEquals("AB", order.toString());
+      assertTrue(awaitSize(timer, 0));
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /* Many short-lived timeouts that are settled before expiring, and are
+   * reclaimed from the wheel well before they would have */
+  @Test
+  public void testManyTimeouts() throws Exception {
+    final AtomicInteger rejected = new AtomicInteger();
+    PromiseAction<Exception> onRejected = new PromiseAction<Exception>() {
+      @Override
+      public void call(Exception reason) {
+        rejected.incrementAndGet();
+      }
+    };
+
+    // other tests may have left tasks of their own on the shared timer
+    HashedWheelTimer timer = HashedWheelTimer.shared();
+    int before = timer.size();
+
+    for (int i = 0; i < 100000; i++) {
+      Promise<Integer> promise = new Promise();
+      promise.timeout(1, TimeUnit.SECONDS).fail(onRejected);
+      promise.fulfill(i);
+    }
+
+    assertTrue(awaitSize(timer, before));
+    assertEquals(0, rejected.get());
+  }
+
+  /* retry() makes attempts until one is fulfilled, waiting in between */
+  @Test
+  public void testRetry() throws Exception {
+    final AtomicInteger attempts = new AtomicInteger();
+
+    Promise<String> promise = Promise.retry(new Func0<Promise<String>>() {
+      @Override
+      public Promise<String> call() {
+        if (attempts.incrementAndGet() < 3) {
+          return Promise.rejected(new Exception("Foo"));
+        }
+
+        return Promise.delay("Hello World", 10, TimeUnit.MILLISECONDS);
+      }
+    }, RetryPolicy.attempts(5).backoff(20, TimeUnit.MILLISECONDS).jitter(0.5));
+
+    assertTrue(promise.isPending());
+    assertEquals("Hello World", promise.toObservable().toBlockingObservable().single());
+    assertEquals(3, attempts.get());
+  }
+
+  /* Once the policy gives up, the last reason is kept */
+  @Test
+  public void testRetryGivesUp() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final Result<Exception> result = new Result<Exception>();
+    final AtomicInteger attempts = new AtomicInteger();
+
+    Promise.retry(new Func0<Promise<String>>() {
+      @Override
+      public Promise<String> call() {
+        return Promise.rejected(new Exception("Attempt " + attempts.incrementAndGet()));
+      }
+    }, RetryPolicy.attempts(3).backoff(5, TimeUnit.MILLISECONDS)).fail(new PromiseAction<Exception>() {
+      @Override
+      public void call(Exception reason) {
+        result.value = reason;
+        latch.countDown();
+      }
+    });
+
+    assertTrue(latch.await(1l, TimeUnit.SECONDS));
+    assertEquals("Attempt 3", result.value.getMessage());
+    assertEquals(3, attempts.get());
+  }
+
+  /* Reasons the policy does not retry fail straight away */
+  @Test
+  public void testRetryNotRetryable() throws Exception {
+    final AtomicInteger attempts = new AtomicInteger();
+
+    Promise<String> promise = Promise.retry(new Func0<Promise<String>>() {
+      @Override
+      public Promise<String> call() {
+        attempts.incrementAndGet();
+        throw new IllegalStateException("Foo");
+      }
+    }, RetryPolicy.attempts(5).retryOn(new Func1<Throwable, Boolean>() {
+      @Override
+      public Boolean call(Throwable reason) {
+        return !(reason instanceof IllegalStateException);
+      }
+    }));
+
+    assertEquals("Foo", promise.getReason().getMessage());
+    assertEquals(1, attempts.get());
+  }
+
+  /* Cancelling stops the next attempt from being made */
+  @Test
+  public void testRetryCancel() throws Exception {
+    final AtomicInteger attempts = new AtomicInteger();
+
+    Promise<String> promise = Promise.retry(new Func0<Promise<String>>() {
+      @Override
+      public Promise<String> call() {
+        attempts.incrementAndGet();
+        return Promise.rejected(new Exception("Foo"));
+      }
+    }, RetryPolicy.attempts(5).backoff(50, TimeUnit.MILLISECONDS));
+
+    assertTrue(promise.cancel());
+
+    Thread.sleep(100);
+    assertEquals(1, attempts.get());
+  }
+
+  /* Many immediate retries use constant stack */
+  @Test
+  public void testRetryImmediate() throws Exception {
+    final AtomicInteger attempts = new AtomicInteger();
+
+    Promise<String> promise = Promise.retry(new Func0<Promise<String>>() {
+      @Override
+      public Promise<String> call() {
+        if (attempts.incrementAndGet() % 2 == 0) {
+          throw new IllegalStateException("Foo");
+        }
+
+        return Promise.rejected(new Exception("Bar"));
+      }
+    }, RetryPolicy.attempts(100000));
+
+    assertEquals(100000, attempts.get());
+    assertEquals("Foo", promise.getReason().getMessage());
+  }
+
+  // a sweep frees the tasks it runs once they have all run, so wait for it
+  private static boolean awaitSize(HashedWheelTimer timer, int size) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+
+    while (timer.size() > size && System.nanoTime() - deadline < 0) {
+      Thread.sleep(10);
+    }
+
+    return timer.size() <= size;
+  }
+
+  private class Result<T> {
+    volatile T value;
+  }
+}
@@ -0,0 +1,115 @@
+package com.darylteo.rx.promises.test;
+
+import com.darylteo.rx.promises.java.Promise;
+import com.darylteo.rx.promises.java.functions.PromiseFunction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Run with -Dcom.darylteo.rx.promises.traceRegistrations=1 (see the
+ * tracingTest task), on Java 7 or later.
+ */
+public class PromiseTracingTests {
+  private final PromiseFunction<String, String> identity = new PromiseFunction<String, String>() {
+    @Override
+    public String call(String value) {
+      return value;
+    }
+  };
+
+  @Before
+  public void setUp() throws Exception {
+    assumeTrue(Integer.getInteger("com.darylteo.rx.promises.traceRegistrations", 0) == 1);
+
+    try {
+      Throwable.class.getMethod("addSuppressed", Throwable.class);
+    } catch (NoSuchMethodException e) {
+      assumeTrue(false);
+    }
+  }
+
+  /* A rejection lists every link that it was forwarded through */
+  @Test
+  public void testRegistrationSites() throws Exception {
+    Promise<String> promise = new Promise();
+    Promise<String> last = promise
+      .then(identity)
+      .then(identity)
+      .then(identity);
+
+    promise.reject("Foo");
+
+    String trace = printed(last.getReason());
+    assertEquals(3, count(trace, "Suppressed:"));
+
+    // the site starts at the caller, not inside the promise library
+    assertTrue(trace.contains("Suppressed: com.darylteo.rx.promises.RegistrationSite: Promise handler registered on com.darylteo.rx.promises.java.Promise\n\t\tat com.darylteo.rx.promises.test.PromiseTracingTests.testRegistrationSites"));
+  }
+
+  /* Handlers that throw are traced too */
+  @Test
+  public void testRegistrationSiteThrown() throws Exception {
+    Promise<String> promise = new Promise();
+    Promise<String> last = promise.then(new PromiseFunction<String, String>() {
+      @Override
+      public String call(String value) {
+        throw new IllegalStateException(value);
+      }
+    });
+
+    promise.fulfill("Foo");
+
+    assertTrue(last.getReason() instanceof IllegalStateException);
+    assertEquals(1, count(printed(last.getReason()), "Suppressed:"));
+  }
+
+  /* Cancellation is not a rejection, and is left alone */
+  @Test
+  public void testCancelled() throws Exception {
+    Promise<String> promise = new Promise();
+    Promise<String> last = promise.then(identity);
+
+    promise.cancel();
+
+    assertTrue(last.isCancelled());
+    assertEquals(0, count(printed(last.getReason()), "Suppressed:"));
+  }
+
+  /* A reason rejected through many chains keeps a bounded number of sites */
+  @Test
+  public void testSharedReason() throws Exception {
+    Exception reason = new Exception("Foo");
+
+    for (int i = 0; i < 10000; i++) {
+      Promise<String> promise = new Promise();
+      promise.then(identity).then(identity);
+
+      promise.reject(reason);
+    }
+
+    assertEquals(32, count(printed(reason), "Suppressed:"));
+  }
+
+  private static String printed(Throwable reason) {
+    StringWriter writer = new StringWriter();
+    reason.printStackTrace(new PrintWriter(writer));
+
+    return writer.toString().replace("\r\n", "\n");
+  }
+
+  private static int count(String text, String part) {
+    int count = 0;
+
+    for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+      count++;
+    }
+
+    return count;
+  }
+}
@@ -0,0 +1,127 @@
+package com.darylteo.rx.promises.test;
+
+import com.darylteo.rx.promises.Promises;
+import com.darylteo.rx.promises.java.Promise;
+import com.darylteo.rx.promises.java.functions.PromiseAction;
+import com.darylteo.rx.promises.java.functions.PromiseFunction;
+import org.junit.After;
+import org.junit.Test;
+import rx.functions.Action1;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PromiseUnhandledRejectionTests {
+  private final List<Throwable> reported = new CopyOnWriteArrayList<Throwable>();
+  private final CountDownLatch latch = new CountDownLatch(1);
+
+  private final Action1<Throwable> handler = new Action1<Throwable>() {
+    @Override
+    public void call(Throwable reason) {
+      reported.add(reason);
+      latch.countDown();
+    }
+  };
+
+  @After
+  public void tearDown() {
+    Promises.setUnhandledRejectionHandler(null);
+  }
+
+  /* Reported once the grace period is over */
+  @Test
+  public void testGracePeriod() throws Exception {
+    Promises.setUnhandledRejectionHandler(handler, 50, TimeUnit.MILLISECONDS);
+
+    Promise<String> promise = new Promise();
+    promise.reject("Foo");
+
+    assertTrue(latch.await(2l, TimeUnit.SECONDS));
+    assertEquals(1, reported.size());
+    assertSame(promise.getReason(), reported.get(0));
+  }
+
+  /* Handled before the grace period is over */
+  @Test
+  public void testHandledLater() throws Exception {
+    Promises.setUnhandledRejectionHandler(handler, 50, TimeUnit.MILLISECONDS);
+
+    Promise<String> promise = Promise.rejected("Foo");
+    promise.fail(new PromiseAction<Exception>() {
+      @Override
+      public void call(Exception reason) {
+      }
+    });
+
+    assertFalse(latch.await(200l, TimeUnit.MILLISECONDS));
+    assertTrue(reported.isEmpty());
+  }
+
+  /* Only the end of a chain is unhandled */
+  @Test
+  public void testChain() throws Exception {
+    Promises.setUnhandledRejectionHandler(handler, 50, TimeUnit.MILLISECONDS);
+
+    Promise<String> promise = new Promise();
+    Promise<String> last = promise
+      .then(new PromiseFunction<String, String>() {
+        @Override
+        public String call(String value) {
+          return value;
+        }
+      })
+      .then(new PromiseFunction<String, String>() {
+        @Override
+        public String call(String value) {
+          throw new IllegalStateException(value);
+        }
+      });
+
+    promise.fulfill("Foo");
+
+    assertTrue(latch.await(2l, TimeUnit.SECONDS));
+    Thread.sleep(100);
+
+    assertEquals(1, reported.size());
+    assertSame(last.getReason(), reported.get(0));
+  }
+
+  /* Cancelled promises are not rejections */
+  @Test
+  public void testCancelled() throws Exception {
+    Promises.setUnhandledRejectionHandler(handler, 50, TimeUnit.MILLISECONDS);
+
+    new Promise<String>().cancel();
+
+    assertFalse(latch.await(200l, TimeUnit.MILLISECONDS));
+  }
+
+  /* Reported when collected, without a grace period */
+  @Test
+  public void testCollected() throws Exception {
+    Promises.setUnhandledRejectionHandler(handler);
+
+    Exception reason = reject();
+
+    for (int i = 0; i < 50 && latch.getCount() > 0; i++) {
+      System.gc();
+      latch.await(100l, TimeUnit.MILLISECONDS);
+    }
+
+    assertEquals(1, reported.size());
+    assertSame(reason, reported.get(0));
+  }
+
+  private Exception reject() {
+    Exception reason = new IllegalStateException("Foo");
+
+    Promise<String> promise = new Promise();
+    promise.reject(reason);
+
+    return reason;
+  }
+}
@@ -0,0 +1,52 @@
+package com.darylteo.rx.promises.jmh;
+
+import com.darylteo.rx.promises.java.Promise;
+import com.darylteo.rx.promises.java.functions.FinallyFunction;
+import com.darylteo.rx.promises.java.functions.PromiseAction;
+import com.darylteo.rx.promises.java.functions.PromiseFunction;
+import com.darylteo.rx.promises.java.functions.RepromiseFunction;
+
+/**
+ * Handlers shared by the benchmarks. They are created once, so that the
+ * allocation figures only count what the promises themselves allocate.
+ */
+final class Benchmarks {
+  // a preallocated reason, so that rejecting does not measure fillInStackTrace
+  static final Exception REASON = new Exception("Foo");
+
+  static final PromiseFunction<Integer, Integer> INCREMENT = new PromiseFunction<Integer, Integer>() {
+    @Override
+    public Integer call(Integer value) {
+      return value + 1;
+    }
+  };
+
+  static final RepromiseFunction<Integer, Integer> REPROMISE = new RepromiseFunction<Integer, Integer>() {
+    @Override
+    public Promise<Integer> call(Integer value) {
+      Promise<Integer> promise = new Promise<Integer>();
+      promise.fulfill(value + 1);
+
+      return promise;
+    }
+  };
+
+  static final FinallyFunction<Void> FINALLY = new FinallyFunction<Void>() {
+    @Override
+    public Promise<Void> call() {
+      Promise<Void> promise = new Promise<Void>();
+      promise.fulfill(null);
+
+      return promise;
+    }
+  };
+
+  static final PromiseAction<Integer> NOTHING = new PromiseAction<Integer>() {
+    @Override
+    public void call(Integer value) {
+    }
+  };
+
+  private Benchmarks() {
+  }
+}
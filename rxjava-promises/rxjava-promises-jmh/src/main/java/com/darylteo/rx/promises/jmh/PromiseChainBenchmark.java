@@ -0,0 +1,76 @@
+package com.darylteo.rx.promises.jmh;
+
+import com.darylteo.rx.promises.java.Promise;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chains of promises, built while pending and then settled in one go, which
+ * is where registration, settlement and the trampoline all show up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromiseChainBenchmark {
+  @Param({"1", "10", "100", "1000"})
+  public int links;
+
+  /* each link is a plain then with a value-returning handler */
+  @Benchmark
+  public Integer then() {
+    Promise<Integer> promise = new Promise<Integer>();
+    Promise<Integer> last = promise;
+
+    for (int i = 0; i < links; i++) {
+      last = last.then(Benchmarks.INCREMENT);
+    }
+
+    promise.fulfill(0);
+    return last.getValue();
+  }
+
+  /* each link returns a new promise, which the next one becomes */
+  @Benchmark
+  public Integer become() {
+    Promise<Integer> promise = new Promise<Integer>();
+    Promise<Integer> last = promise;
+
+    for (int i = 0; i < links; i++) {
+      last = last.then(Benchmarks.REPROMISE);
+    }
+
+    promise.fulfill(0);
+    return last.getValue();
+  }
+
+  /* each link is a fin whose handler returns a promise to wait on */
+  @Benchmark
+  public Integer fin() {
+    Promise<Integer> promise = new Promise<Integer>();
+    Promise<Integer> last = promise;
+
+    for (int i = 0; i < links; i++) {
+      last = last.fin(Benchmarks.FINALLY);
+    }
+
+    promise.fulfill(0);
+    return last.getValue();
+  }
+
+  /* chained onto a promise that is already fulfilled */
+  @Benchmark
+  public Integer thenSettled() {
+    Promise<Integer> last = new Promise<Integer>();
+    last.fulfill(0);
+
+    for (int i = 0; i < links; i++) {
+      last = last.then(Benchmarks.INCREMENT);
+    }
+
+    return last.getValue();
+  }
+}
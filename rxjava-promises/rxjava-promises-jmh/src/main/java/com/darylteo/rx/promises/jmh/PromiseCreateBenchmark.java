@@ -0,0 +1,41 @@
+package com.darylteo.rx.promises.jmh;
+
+import com.darylteo.rx.promises.java.Promise;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of a single promise with nothing chained to it: the baseline that
+ * every other benchmark builds on.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromiseCreateBenchmark {
+  private final String value = "Hello World";
+
+  @Benchmark
+  public Promise<String> create() {
+    return new Promise<String>();
+  }
+
+  @Benchmark
+  public Promise<String> createAndFulfill() {
+    Promise<String> promise = new Promise<String>();
+    promise.fulfill(value);
+
+    return promise;
+  }
+
+  @Benchmark
+  public Promise<String> createAndReject() {
+    Promise<String> promise = new Promise<String>();
+    promise.reject(Benchmarks.REASON);
+
+    return promise;
+  }
+}
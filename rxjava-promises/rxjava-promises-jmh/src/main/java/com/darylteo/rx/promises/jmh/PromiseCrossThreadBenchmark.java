@@ -0,0 +1,82 @@
+package com.darylteo.rx.promises.jmh;
+
+import com.darylteo.rx.promises.java.Promise;
+import com.darylteo.rx.promises.java.functions.PromiseAction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A promise registered on one thread and fulfilled on another, so the
+ * handler runs on the fulfilling thread: the round trip of handing a value
+ * between threads through a promise.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromiseCrossThreadBenchmark {
+  private ExecutorService executor;
+
+  private final AtomicReference<Integer> result = new AtomicReference<Integer>();
+
+  private final PromiseAction<Integer> handler = new PromiseAction<Integer>() {
+    @Override
+    public void call(Integer value) {
+      result.lazySet(value);
+    }
+  };
+
+  @Setup
+  public void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public Integer fulfillOnOtherThread() {
+    final Promise<Integer> promise = new Promise<Integer>();
+    promise.then(handler);
+
+    result.set(null);
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        promise.fulfill(1);
+      }
+    });
+
+    Integer value;
+    while ((value = result.get()) == null) {
+      Thread.yield();
+    }
+
+    return value;
+  }
+
+  /* the handler is moved back onto a thread of its own with on() */
+  @Benchmark
+  public Integer fulfillOnExecutor() {
+    Promise<Integer> promise = new Promise<Integer>();
+    promise.on(executor).then(handler);
+
+    result.set(null);
+    promise.fulfill(1);
+
+    Integer value;
+    while ((value = result.get()) == null) {
+      Thread.yield();
+    }
+
+    return value;
+  }
+}
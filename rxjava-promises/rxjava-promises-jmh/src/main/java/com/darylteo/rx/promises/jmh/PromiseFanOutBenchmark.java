@@ -0,0 +1,45 @@
+package com.darylteo.rx.promises.jmh;
+
+import com.darylteo.rx.promises.java.Promise;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many handlers registered on a single promise, then run when it settles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromiseFanOutBenchmark {
+  @Param({"1", "10", "100"})
+  public int subscribers;
+
+  @Benchmark
+  public Promise<Integer> fanOut() {
+    Promise<Integer> promise = new Promise<Integer>();
+
+    for (int i = 0; i < subscribers; i++) {
+      promise.then(Benchmarks.NOTHING);
+    }
+
+    promise.fulfill(0);
+    return promise;
+  }
+
+  /* the same, but through the Observable adapter */
+  @Benchmark
+  public Promise<Integer> fanOutObservable() {
+    Promise<Integer> promise = new Promise<Integer>();
+
+    for (int i = 0; i < subscribers; i++) {
+      promise.toObservable().subscribe(Benchmarks.NOTHING);
+    }
+
+    promise.fulfill(0);
+    return promise;
+  }
+}
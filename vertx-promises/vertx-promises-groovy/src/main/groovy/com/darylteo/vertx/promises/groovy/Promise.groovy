@@ -1,11 +1,16 @@
 package com.darylteo.vertx.promises.groovy
 
-import com.darylteo.rx.promises.AbstractPromise
+import groovy.transform.CompileStatic
 import org.vertx.java.core.Handler
-import rx.functions.Action0
-import rx.functions.Func1
 
-public class Promise<T> extends AbstractPromise<T> implements Handler<T> {
+/**
+ * A promise taking closures as handlers, that can be passed to Vert.x as a
+ * {@link Handler}. The handlers are implemented by the rxjava-promises
+ * Groovy promise. This class narrows their return types, so statically
+ * compiled verticles keep the Vert.x type along a chain.
+ */
+@CompileStatic
+public class Promise<T> extends com.darylteo.rx.promises.groovy.Promise<T> implements Handler<T> {
   public Promise() {
     super();
   }
@@ -14,25 +19,52 @@ public class Promise<T> extends AbstractPromise<T> implements Handler<T> {
     super(source);
   }
 
+  // resolved(null) is common enough to share one instance
+  private static final Promise NULL = (Promise) _resolved(new Promise<Object>(), (Object) null)
 
+  public static <T> Promise<T> resolved(T value) {
+    if (value == null) {
+      return (Promise<T>) NULL
+    }
+
+    return (Promise<T>) _resolved(new Promise<T>(), value)
+  }
+
+  public static <T> Promise<T> rejected(Object reason) {
+    return (Promise<T>) _rejected(new Promise<T>(), reason)
+  }
+
+  public static <T> Promise<List<T>> all(Iterable<? extends com.darylteo.rx.promises.groovy.Promise<T>> promises) {
+    return (Promise<List<T>>) _all(new Promise<List<T>>(), promises)
+  }
+
+  public static <T> Promise<List<Promise<T>>> allSettled(Iterable<? extends com.darylteo.rx.promises.groovy.Promise<T>> promises) {
+    return (Promise<List<Promise<T>>>) _allSettled(new Promise<List<Promise<T>>>(), promises)
+  }
+
+  @Override
   public <O> Promise<O> then(Map m = [:]) {
-    return this.promise(m.onFulfilled, m.onRejected, null)
+    return (Promise<O>) super.<O> then(m)
   }
 
+  @Override
   public <O> Promise<O> then(Closure<O> onFulfilled, Closure<O> onRejected = null) {
-    return this.promise(onFulfilled, onRejected, null);
+    return (Promise<O>) super.<O> then(onFulfilled, onRejected)
   }
 
+  @Override
   public <O> Promise<O> fail(Closure<O> onRejected) {
-    return this.promise(null, onRejected, null);
+    return (Promise<O>) super.<O> fail(onRejected)
   }
 
+  @Override
   public <O> Promise<O> fin(Closure<O> onFinally) {
-    return this.promise(null, null, onFinally);
+    return (Promise<O>) super.<O> fin(onFinally)
   }
 
-  private <O> Promise<O> promise(Closure<O> onFulfilled, Closure<O> onRejected, Closure<O> onFinally) {
-    return (Promise<O>) super._then(onFulfilled as Func1<T, O>, onRejected as Func1<T, O>, onFinally as Action0<?>)
+  @Override
+  protected <O> Promise<O> newDeferred() {
+    return new Promise<O>();
   }
 
   @Override
@@ -0,0 +1,57 @@
+package com.darylteo.vertx.promises.java;
+
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks on a Vert.x context, so that they run on the event loop (or
+ * worker) of the verticle that owns it.
+ * <p/>
+ * Given the Vertx instance as well, tasks submitted from that context
+ * itself are run straight away rather than queued behind everything else
+ * on the event loop.
+ */
+final class ContextExecutor implements Executor {
+  private final Vertx vertx;
+  private final Context context;
+
+  ContextExecutor(Context context) {
+    this(null, context);
+  }
+
+  ContextExecutor(Vertx vertx, Context context) {
+    if (context == null) {
+      throw new NullPointerException("context");
+    }
+
+    this.vertx = vertx;
+    this.context = context;
+  }
+
+  /**
+   * @return an executor for the context of the calling thread, or null if it
+   * is not a Vert.x thread
+   */
+  static ContextExecutor current(Vertx vertx) {
+    Context context = vertx.currentContext();
+    return context == null ? null : new ContextExecutor(vertx, context);
+  }
+
+  @Override
+  public void execute(final Runnable task) {
+    if (this.vertx != null && this.vertx.currentContext() == this.context) {
+      task.run();
+      return;
+    }
+
+    this.context.runOnContext(new Handler<Void>() {
+      @Override
+      public void handle(Void event) {
+        task.run();
+      }
+    });
+  }
+}
@@ -1,11 +1,19 @@
 package com.darylteo.vertx.promises.java;
 
 import com.darylteo.rx.promises.AbstractPromise;
+import com.darylteo.rx.promises.RetryPolicy;
 import com.darylteo.vertx.promises.java.functions.*;
+import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
 import rx.Observable;
+import rx.functions.Func0;
 import rx.functions.Function;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 public class Promise<T> extends AbstractPromise<T> implements Handler<T> {
   public Promise() {
     super();
@@ -15,6 +23,107 @@ public class Promise<T> extends AbstractPromise<T> implements Handler<T> {
     super(source);
   }
 
+  /**
+   * Creates a promise whose handlers are run on the Vert.x context of the
+   * calling thread, such as the event loop of the verticle creating it,
+   * whichever thread it is settled from. Promises chained from it are run
+   * there too. When it is settled from that context already, its handlers
+   * are run straight away.
+   * <p/>
+   * Outside of Vert.x, this is the same as {@code new Promise()}.
+   */
+  public Promise(Vertx vertx) {
+    super(ContextExecutor.current(vertx));
+  }
+
+  private Promise(Executor executor) {
+    super(executor);
+  }
+
+  /* ================== */
+  /* Settled Promises */
+
+  // resolved(null) is common enough (Promise<Void>) to share one instance
+  private static final Promise<Object> NULL = (Promise<Object>) _resolved(new Promise<Object>(), null);
+
+  /**
+   * Returns a promise that is already fulfilled with the given value.
+   * Handlers chained from it are run as soon as they are registered.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<T> resolved(T value) {
+    if (value == null) {
+      return (Promise<T>) NULL;
+    }
+
+    return (Promise<T>) _resolved(new Promise<T>(), value);
+  }
+
+  /**
+   * Returns a promise that is already rejected with the given reason.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<T> rejected(Throwable reason) {
+    return (Promise<T>) _rejected(new Promise<T>(), reason);
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<T> rejected(Object reason) {
+    return (Promise<T>) _rejected(new Promise<T>(), reason);
+  }
+
+  /* ================== */
+  /* Combinators */
+
+  /**
+   * Returns a promise for the values of all the given promises, in iteration
+   * order. It is rejected as soon as any of them is rejected.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<List<T>> all(Iterable<? extends Promise<? extends T>> promises) {
+    return (Promise<List<T>>) _all(new Promise<List<T>>(), promises);
+  }
+
+  /**
+   * Returns a promise for the given promises themselves, in iteration order,
+   * that is fulfilled once every one of them is either fulfilled or rejected.
+   * Inspect each with getState(), getValue() and getReason().
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<List<Promise<T>>> allSettled(Iterable<? extends Promise<T>> promises) {
+    return (Promise<List<Promise<T>>>) _allSettled(new Promise<List<Promise<T>>>(), promises);
+  }
+
+  /* ================== */
+  /* Timers */
+
+  /**
+   * Returns a promise that is fulfilled with null after the given delay,
+   * using a Vert.x timer.
+   */
+  public static Promise<Void> delay(Vertx vertx, long delay, TimeUnit unit) {
+    return delay(vertx, null, delay, unit);
+  }
+
+  /**
+   * Returns a promise that is fulfilled with the given value after the given
+   * delay, using a Vert.x timer.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<T> delay(Vertx vertx, T value, long delay, TimeUnit unit) {
+    return (Promise<T>) _delay(new Promise<T>(vertx), value, delay, unit, new VertxTimer(vertx));
+  }
+
+  /**
+   * Returns a promise for the first promise returned by attempt that is
+   * fulfilled. Whenever one is rejected, attempt is called again, as often
+   * and as soon as the policy allows, waiting on Vert.x timers in between.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Promise<T> retry(Vertx vertx, Func0<Promise<T>> attempt, RetryPolicy policy) {
+    return (Promise<T>) _retry(new Promise<T>(vertx), attempt, policy, new VertxTimer(vertx));
+  }
+
   /* ================== */
   /* Strictly Typed Defer Methods */
   // then(onFulfilled)
@@ -88,6 +197,25 @@ public class Promise<T> extends AbstractPromise<T> implements Handler<T> {
     return this.promise(null, null, onFinally);
   }
 
+  /* ================== */
+  /* Timeout Methods */
+
+  /**
+   * Returns a promise for the same result as this one, that is instead
+   * rejected with a {@link java.util.concurrent.TimeoutException} if this one
+   * is still pending after the given delay. The Vert.x timer is cancelled as
+   * soon as this promise is settled.
+   */
+  public Promise<T> timeout(Vertx vertx, long delay, TimeUnit unit) {
+    return (Promise<T>) super._timeout(delay, unit, new VertxTimer(vertx));
+  }
+
+  // the next promise in a chain is run on the same context as this one
+  @Override
+  protected <O> Promise<O> newDeferred() {
+    return new Promise<O>(this.getExecutor());
+  }
+
   @SuppressWarnings("unchecked")
   protected <O> Promise<O> promise(Function onFulfilled, Function onRejected, Function onFinally) {
     return (Promise<O>) super._then(onFulfilled, onRejected, onFinally);
@@ -97,4 +225,32 @@ public class Promise<T> extends AbstractPromise<T> implements Handler<T> {
   public void handle(T event) {
     this.fulfill(event);
   }
+
+  /**
+   * Returns a handler that fulfills this promise with the result of a
+   * successful {@link AsyncResult}, and rejects it with the cause of a
+   * failed one, for passing to Vert.x methods that report their outcome that
+   * way.
+   */
+  public Handler<AsyncResult<T>> asyncResultHandler() {
+    return new AsyncResultHandler<T>(this);
+  }
+
+  /* Private Classes */
+  private static final class AsyncResultHandler<T> implements Handler<AsyncResult<T>> {
+    private final Promise<T> promise;
+
+    AsyncResultHandler(Promise<T> promise) {
+      this.promise = promise;
+    }
+
+    @Override
+    public void handle(AsyncResult<T> result) {
+      if (result.succeeded()) {
+        this.promise.fulfill(result.result());
+      } else {
+        this.promise.reject(result.cause());
+      }
+    }
+  }
 }
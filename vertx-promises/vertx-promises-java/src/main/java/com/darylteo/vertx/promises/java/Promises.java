@@ -0,0 +1,67 @@
+package com.darylteo.vertx.promises.java;
+
+import com.darylteo.rx.promises.PromiseBatch;
+import org.vertx.java.core.Context;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.eventbus.EventBus;
+import org.vertx.java.core.eventbus.Message;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vert.x specific helpers for working with promises.
+ */
+public final class Promises {
+  private Promises() {
+  }
+
+  /* ================== */
+  /* Event Bus */
+
+  /**
+   * Sends a message on the event bus, returning a promise for the reply.
+   * The promise itself is registered as the reply handler, so no adapter
+   * is created per message.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public static <R> Promise<Message<R>> send(EventBus eventBus, String address, Object message) {
+    Promise<Message<R>> reply = new Promise<Message<R>>();
+    eventBus.send(address, message, (Handler<Message>) (Handler<?>) reply);
+
+    return reply;
+  }
+
+  /**
+   * Sends a message on the event bus, returning a promise for the reply
+   * that is rejected with a {@link java.util.concurrent.TimeoutException} if
+   * none arrives within the given timeout. The promise's handlers are run on
+   * the context of the calling thread, whether it is answered or times out.
+   * <p/>
+   * Timeouts are accurate to 10 milliseconds. Rather than a Vert.x timer per
+   * message, one sweep on a shared timer expires every overdue reply.
+   */
+  public static <R> Promise<Message<R>> send(Vertx vertx, String address, Object message, long timeout, TimeUnit unit) {
+    return ReplyTable.SHARED.send(vertx, address, message, timeout, unit);
+  }
+
+  /* ================== */
+  /* Batches */
+
+  /**
+   * Fulfills each promise with its value, then runs all of their handlers
+   * on the given context, in a single task.
+   */
+  public static <T> void fulfillAll(Context context, Map<? extends Promise<T>, ? extends T> values) {
+    com.darylteo.rx.promises.Promises.fulfillAll(values, new ContextExecutor(context));
+  }
+
+  /**
+   * Settles every promise in the batch, then runs all of their handlers on
+   * the given context, in a single task.
+   */
+  public static void settle(Context context, PromiseBatch batch) {
+    batch.settle(new ContextExecutor(context));
+  }
+}
@@ -0,0 +1,186 @@
+package com.darylteo.vertx.promises.java;
+
+import com.darylteo.rx.promises.HashedWheelTimer;
+import com.darylteo.rx.promises.Timer;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.eventbus.Message;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The replies still awaited for messages sent through
+ * {@link Promises#send(Vertx, String, Object, long, TimeUnit)}, and the one
+ * sweep that times them out.
+ * <p/>
+ * Replies are queued by the length of their timeout, so each queue is in
+ * deadline order: a sweep only looks at the head of each queue, and stops at
+ * the first reply that is neither answered nor expired. The cost of a sweep
+ * is the number of replies it removes, plus one per distinct timeout. The
+ * sweep is a single task on the shared {@link HashedWheelTimer}, scheduled
+ * only while replies are awaited, so there is no timer per message.
+ * <p/>
+ * The event bus in Vert.x 2.0.2 has no send timeout and no way to unregister
+ * a reply handler. A reply that times out here stays registered on the
+ * event bus, and if the reply does arrive late it is dropped by its handler.
+ */
+final class ReplyTable implements Runnable {
+  static final ReplyTable SHARED = new ReplyTable(HashedWheelTimer.shared(), 10, TimeUnit.MILLISECONDS);
+
+  private final Timer timer;
+  private final long tickNanos;
+
+  // keyed by timeout, rounded up to a whole tick so there are few of them
+  private final ConcurrentMap<Long, Queue<PendingReply>> queues = new ConcurrentHashMap<Long, Queue<PendingReply>>();
+
+  // true while a sweep is scheduled or running
+  private final AtomicBoolean sweeping = new AtomicBoolean();
+
+  ReplyTable(Timer timer, long tick, TimeUnit unit) {
+    this.timer = timer;
+    this.tickNanos = unit.toNanos(tick);
+  }
+
+  /**
+   * Sends a message, returning a promise for the reply that is rejected with
+   * a {@link TimeoutException} if none arrives in time.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  <R> Promise<Message<R>> send(Vertx vertx, String address, Object message, long timeout, TimeUnit unit) {
+    long ticks = Math.max(1, (unit.toNanos(timeout) + this.tickNanos - 1) / this.tickNanos);
+    long timeoutNanos = ticks * this.tickNanos;
+
+    Promise<Message<R>> promise = new Promise<Message<R>>(vertx);
+    PendingReply reply = new PendingReply((Promise<Message>) (Promise<?>) promise, address, timeoutNanos);
+
+    this.add(reply);
+    vertx.eventBus().send(address, message, reply);
+
+    return promise;
+  }
+
+  private void add(PendingReply reply) {
+    this.enqueue(reply);
+    this.scheduleSweep();
+  }
+
+  private void enqueue(PendingReply reply) {
+    Long key = reply.timeoutNanos;
+
+    for (; ; ) {
+      Queue<PendingReply> queue = this.queues.get(key);
+
+      if (queue == null) {
+        Queue<PendingReply> created = new ConcurrentLinkedQueue<PendingReply>();
+        queue = this.queues.putIfAbsent(key, created);
+
+        if (queue == null) {
+          queue = created;
+        }
+      }
+
+      queue.add(reply);
+
+      // a sweep may have dropped the queue as empty just before the add, in
+      // which case add it again to whichever queue replaced it. The sweep
+      // may also move it back itself (see run), but being queued twice does
+      // no harm: only the first answer or expiry settles the promise
+      if (this.queues.get(key) == queue) {
+        break;
+      }
+    }
+  }
+
+  private void scheduleSweep() {
+    if (this.sweeping.compareAndSet(false, true)) {
+      this.timer.schedule(this, this.tickNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  // the sweep
+  @Override
+  public void run() {
+    long now = System.nanoTime();
+
+    for (Map.Entry<Long, Queue<PendingReply>> entry : this.queues.entrySet()) {
+      Queue<PendingReply> queue = entry.getValue();
+      PendingReply head;
+
+      // answered replies are dropped early as well, once they reach the head
+      while ((head = queue.peek()) != null && (head.isAnswered() || head.deadline - now <= 0)) {
+        queue.poll();
+        head.expire();
+      }
+
+      if (queue.isEmpty() && this.queues.remove(entry.getKey(), queue)) {
+        // a reply may have been added between the check and the removal,
+        // having seen the queue still in place. Move any such reply back
+        while ((head = queue.poll()) != null) {
+          if (!head.isAnswered()) {
+            this.enqueue(head);
+          }
+        }
+      }
+    }
+
+    // a reply added during the sweep saw it running and left it to this to
+    // schedule the next one
+    this.sweeping.set(false);
+
+    if (!this.queues.isEmpty()) {
+      this.scheduleSweep();
+    }
+  }
+
+  /* Private Classes */
+  @SuppressWarnings("rawtypes")
+  private static final class PendingReply implements Handler<Message> {
+    private final String address;
+    private final long timeoutNanos;
+    private final long deadline;
+
+    // cleared once answered or expired, so an answered reply waiting to be
+    // swept holds nothing
+    private volatile Promise<Message> promise;
+
+    PendingReply(Promise<Message> promise, String address, long timeoutNanos) {
+      this.promise = promise;
+      this.address = address;
+      this.timeoutNanos = timeoutNanos;
+      this.deadline = System.nanoTime() + timeoutNanos;
+    }
+
+    // still called for a reply that arrives after it has expired, as the
+    // handler cannot be unregistered. The reply is dropped
+    @Override
+    public void handle(Message message) {
+      Promise<Message> promise = this.promise;
+
+      if (promise != null) {
+        this.promise = null;
+        promise.fulfill(message);
+      }
+    }
+
+    boolean isAnswered() {
+      return this.promise == null;
+    }
+
+    void expire() {
+      Promise<Message> promise = this.promise;
+
+      if (promise != null) {
+        this.promise = null;
+        promise.reject(new TimeoutException("No reply to message sent to " + this.address
+          + " within " + TimeUnit.NANOSECONDS.toMillis(this.timeoutNanos) + "ms"));
+      }
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package com.darylteo.vertx.promises.java;
+
+import com.darylteo.rx.promises.Timer;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules promise timers as Vert.x timers, so that they fire on the event
+ * loop of the verticle that set them.
+ */
+final class VertxTimer implements Timer {
+  private final Vertx vertx;
+
+  VertxTimer(Vertx vertx) {
+    if (vertx == null) {
+      throw new NullPointerException("vertx");
+    }
+
+    this.vertx = vertx;
+  }
+
+  @Override
+  public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    VertxTimeout timeout = new VertxTimeout(this.vertx, task);
+
+    // Vert.x timers must be at least a millisecond long
+    timeout.id = this.vertx.setTimer(Math.max(1, unit.toMillis(delay)), timeout);
+
+    return timeout;
+  }
+
+  /* Private Classes */
+  private static final class VertxTimeout implements Timeout, Handler<Long> {
+    private final Vertx vertx;
+    private final Runnable task;
+
+    long id;
+
+    VertxTimeout(Vertx vertx, Runnable task) {
+      this.vertx = vertx;
+      this.task = task;
+    }
+
+    @Override
+    public void handle(Long id) {
+      this.task.run();
+    }
+
+    @Override
+    public boolean cancel() {
+      return this.vertx.cancelTimer(this.id);
+    }
+  }
+}
@@ -1,14 +1,23 @@
 package com.darylteo.vertx.promises.java.test;
 
 import com.darylteo.vertx.promises.java.Promise;
+import com.darylteo.vertx.promises.java.Promises;
 import com.darylteo.vertx.promises.java.functions.PromiseAction;
 import com.darylteo.vertx.promises.java.functions.PromiseFunction;
 import com.darylteo.vertx.promises.java.functions.RepromiseFunction;
 import org.junit.Test;
+import org.vertx.java.core.Context;
 import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.eventbus.Message;
 import org.vertx.testtools.TestVerticle;
 
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import static org.vertx.testtools.VertxAssert.assertEquals;
+import static org.vertx.testtools.VertxAssert.assertTrue;
 import static org.vertx.testtools.VertxAssert.testComplete;
 
 public class PromiseTests extends TestVerticle {
@@ -44,4 +53,141 @@ public class PromiseTests extends TestVerticle {
 
     });
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testTimeout() {
+    Promise<String> promise = new Promise();
+
+    promise.timeout(vertx, 100l, TimeUnit.MILLISECONDS).fail(new PromiseAction<Exception>() {
+      @Override
+      public void call(Exception reason) {
+        assertTrue(reason instanceof TimeoutException);
+        testComplete();
+      }
+    });
+  }
+
+  @Test
+  public void testDelay() {
+    Promise.delay(vertx, "Hello World", 100l, TimeUnit.MILLISECONDS).then(new PromiseAction<String>() {
+      @Override
+      public void call(String value) {
+        assertEquals("Hello World", value);
+        testComplete();
+      }
+    });
+  }
+
+  @Test
+  public void testFulfillAll() {
+    final Context context = vertx.currentContext();
+    final Promise<String> promise = new Promise();
+
+    promise.then(new PromiseAction<String>() {
+      @Override
+      public void call(String value) {
+        assertEquals("Hello World", value);
+        assertTrue(vertx.currentContext() == context);
+        testComplete();
+      }
+    });
+
+    new Thread() {
+      @Override
+      public void run() {
+        Promises.fulfillAll(context, Collections.singletonMap(promise, "Hello World"));
+      }
+    }.start();
+  }
+
+  @Test
+  public void testContext() {
+    final Context context = vertx.currentContext();
+    final Promise<String> promise = new Promise(vertx);
+
+    promise.then(new PromiseFunction<String, String>() {
+      @Override
+      public String call(String value) {
+        assertTrue(vertx.currentContext() == context);
+        return value.toUpperCase();
+      }
+    }).then(new PromiseAction<String>() {
+      @Override
+      public void call(String value) {
+        assertEquals("HELLO WORLD", value);
+        assertTrue(vertx.currentContext() == context);
+        testComplete();
+      }
+    });
+
+    // settled from a thread that is not part of Vert.x
+    new Thread() {
+      @Override
+      public void run() {
+        promise.fulfill("Hello World");
+      }
+    }.start();
+  }
+
+  @Test
+  public void testAsyncResult() {
+    final Promise<Boolean> exists = new Promise();
+    final Promise<Buffer> missing = new Promise();
+
+    vertx.fileSystem().exists(".", exists.asyncResultHandler());
+    vertx.fileSystem().readFile("does-not-exist", missing.asyncResultHandler());
+
+    exists.then(new RepromiseFunction<Boolean, Buffer>() {
+      @Override
+      public Promise<Buffer> call(Boolean value) {
+        assertTrue(value);
+        return missing;
+      }
+    }).fail(new PromiseAction<Exception>() {
+      @Override
+      public void call(Exception reason) {
+        assertTrue(missing.isRejected());
+        testComplete();
+      }
+    });
+  }
+
+  @Test
+  public void testSend() {
+    vertx.eventBus().registerHandler("test.echo", new Handler<Message<String>>() {
+      @Override
+      public void handle(Message<String> message) {
+        message.reply(message.body().toUpperCase());
+      }
+    });
+
+    Promises.<String>send(vertx.eventBus(), "test.echo", "Hello World").then(new PromiseAction<Message<String>>() {
+      @Override
+      public void call(Message<String> reply) {
+        assertEquals("HELLO WORLD", reply.body());
+        testComplete();
+      }
+    });
+  }
+
+  @Test
+  public void testSendTimeout() {
+    final Context context = vertx.currentContext();
+
+    // the message is received, but never replied to
+    vertx.eventBus().registerHandler("test.silent", new Handler<Message<String>>() {
+      @Override
+      public void handle(Message<String> message) {
+      }
+    });
+
+    Promises.<String>send(vertx, "test.silent", "Hello World", 100l, TimeUnit.MILLISECONDS).fail(new PromiseAction<Exception>() {
+      @Override
+      public void call(Exception reason) {
+        assertTrue(reason instanceof TimeoutException);
+        assertTrue(vertx.currentContext() == context);
+        testComplete();
+      }
+    });
+  }
+}